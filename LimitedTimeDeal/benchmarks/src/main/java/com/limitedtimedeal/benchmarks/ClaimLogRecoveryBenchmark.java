@@ -0,0 +1,79 @@
+package com.limitedtimedeal.benchmarks;
+
+import com.limitedtimedeal.service.ClaimLog;
+import com.limitedtimedeal.service.PurchaseDedupFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Restart time of {@code deal.store.mode=log}: rebuilding the dedup filter from a
+ * claim log of {@code claims} records spread over 100 deals, either by replaying
+ * every segment or from a snapshot taken after the last write. No application
+ * context is started; the log and filter are used directly.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ClaimLogRecoveryBenchmark {
+
+    private static final int DEALS = 100;
+
+    @Param({"1000000", "10000000"})
+    public int claims;
+
+    @Param({"false", "true"})
+    public boolean snapshot;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeLog() throws Exception {
+        directory = Files.createTempDirectory("claim-log-bench");
+        ClaimLog claimLog = newLog();
+        PurchaseDedupFilter filter = new PurchaseDedupFilter(null, null, claimLog);
+        filter.recover();
+        long last = 0;
+        for (int i = 0; i < claims; i++) {
+            long dealId = i % DEALS + 1;
+            long userId = i / DEALS + 1;
+            filter.add(dealId, userId);
+            last = claimLog.write(dealId, userId);
+        }
+        claimLog.awaitDurable(last);
+        if (snapshot) {
+            claimLog.snapshot();
+        }
+        claimLog.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLog() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public long recover() throws InterruptedException {
+        ClaimLog claimLog = newLog();
+        PurchaseDedupFilter filter = new PurchaseDedupFilter(null, null, claimLog);
+        filter.recover();
+        claimLog.close();
+        return filter.buyerCount(1L);
+    }
+
+    private ClaimLog newLog() {
+        return new ClaimLog("log", directory, 64, 2);
+    }
+}
@@ -0,0 +1,40 @@
+package com.limitedtimedeal.benchmarks;
+
+import com.limitedtimedeal.dto.DealDto;
+import com.limitedtimedeal.model.Deal;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code DealService.createDeal} on the embedded H2 fixture.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CreateDealBenchmark {
+
+    private DealFixture fixture;
+
+    private DealDto dealDto;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        fixture = new DealFixture(1);
+        dealDto = fixture.dealDto(100);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        fixture.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Deal createDeal() {
+        return fixture.dealService().createDeal(dealDto);
+    }
+}
@@ -0,0 +1,101 @@
+package com.limitedtimedeal.benchmarks;
+
+import com.limitedtimedeal.LimitedTimeDealApplication;
+import com.limitedtimedeal.dto.DealDto;
+import com.limitedtimedeal.model.Product;
+import com.limitedtimedeal.model.Users;
+import com.limitedtimedeal.repository.UserRepository;
+import com.limitedtimedeal.service.DealService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerCustomizer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Application context on a fresh embedded H2 database with a product and a
+ * fixed number of registered users, so every run starts from the same data.
+ * Settings are passed as command line arguments, since default properties rank
+ * below application.properties and would be ignored. Scheduler threads are
+ * daemons, so a trial that fails before its teardown cannot keep the forked VM
+ * alive.
+ */
+public class DealFixture implements AutoCloseable {
+
+    private static final int USER_BATCH = 1000;
+
+    private final ConfigurableApplicationContext context;
+
+    private final DealService dealService;
+
+    private final Long productId;
+
+    private final long[] userIds;
+
+    public DealFixture(int users, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        context = new SpringApplicationBuilder(LimitedTimeDealApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(context -> context.getBeanFactory().registerSingleton("daemonScheduler",
+                        (ThreadPoolTaskSchedulerCustomizer) scheduler -> scheduler.setDaemon(true)))
+                .run(args.toArray(String[]::new));
+        dealService = context.getBean(DealService.class);
+        productId = dealService.createProduct(new Product(null, "benchmark product")).getId();
+        userIds = registerUsers(context.getBean(UserRepository.class), users);
+    }
+
+    public DealService dealService() {
+        return dealService;
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public long userId(long sequence) {
+        return userIds[(int) (sequence % userIds.length)];
+    }
+
+    public int userCount() {
+        return userIds.length;
+    }
+
+    public Long createDeal(long productCount) {
+        return dealService.createDeal(dealDto(productCount)).getId();
+    }
+
+    public DealDto dealDto(long productCount) {
+        return new DealDto(productId, null, LocalDateTime.now().plusYears(1), 10, productCount, null);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private static long[] registerUsers(UserRepository userRepository, int count) {
+        long[] ids = new long[count];
+        int next = 0;
+        while (next < count) {
+            List<Users> batch = new ArrayList<>(USER_BATCH);
+            for (int i = next; i < Math.min(count, next + USER_BATCH); i++) {
+                batch.add(new Users(null, "bench-user-" + i));
+            }
+            for (Users user : userRepository.saveAll(batch)) {
+                ids[next++] = user.getId();
+            }
+        }
+        return ids;
+    }
+}
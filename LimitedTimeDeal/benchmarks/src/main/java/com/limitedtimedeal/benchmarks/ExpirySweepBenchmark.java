@@ -0,0 +1,92 @@
+package com.limitedtimedeal.benchmarks;
+
+import com.limitedtimedeal.dto.DealDto;
+import com.limitedtimedeal.service.DealService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One run of the hourly expiry sweep over {@link #deals} expired deals. Each
+ * iteration creates the deals and then moves their end time into the past in
+ * the database, so only the sweep (not the expiry wheel) sees them. The mean and
+ * slowest chunk are printed, since a chunk bounds how long a purchase can wait on
+ * the sweep's row locks.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpirySweepBenchmark {
+
+    private static final int CREATE_BATCH = 1000;
+
+    @Param({"100000"})
+    public int deals;
+
+    @Param({"100", "500"})
+    public int chunkSize;
+
+    private DealFixture fixture;
+
+    private DealService dealService;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private Timer chunkTimer;
+
+    private long chunksBefore;
+
+    private double chunkMillisBefore;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        fixture = new DealFixture(1, "deal.expiry.sweep.chunk-size=" + chunkSize);
+        dealService = fixture.dealService();
+        jdbcTemplate = fixture.bean(JdbcTemplate.class);
+        chunkTimer = fixture.bean(MeterRegistry.class).get("deal.expiry.sweep.chunk").timer();
+        String plan = jdbcTemplate.queryForObject("EXPLAIN SELECT id FROM deal WHERE is_valid = TRUE "
+                + "AND end_time < CURRENT_TIMESTAMP ORDER BY is_valid, end_time, id LIMIT " + chunkSize, String.class);
+        System.out.println("Sweep chunk plan: " + plan.replaceAll("\\s+", " "));
+    }
+
+    @Setup(Level.Iteration)
+    public void createExpiredDeals() {
+        for (int created = 0; created < deals; created += CREATE_BATCH) {
+            List<DealDto> batch = new ArrayList<>(CREATE_BATCH);
+            for (int i = 0; i < CREATE_BATCH; i++) {
+                batch.add(fixture.dealDto(10));
+            }
+            dealService.createDeals(batch);
+        }
+        jdbcTemplate.update("UPDATE deal SET end_time = ? WHERE is_valid = TRUE", LocalDateTime.now().minusDays(1));
+        chunksBefore = chunkTimer.count();
+        chunkMillisBefore = chunkTimer.totalTime(TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportSlowestChunk() {
+        long chunks = chunkTimer.count() - chunksBefore;
+        double chunkMillis = chunkTimer.totalTime(TimeUnit.MILLISECONDS) - chunkMillisBefore;
+        System.out.printf("Sweep chunks: %d, mean %.2f ms, slowest %.2f ms%n", chunks,
+                chunks == 0 ? 0 : chunkMillis / chunks, chunkTimer.max(TimeUnit.MILLISECONDS));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public int sweep() {
+        return dealService.deactivateExpiredDeals();
+    }
+}
@@ -0,0 +1,131 @@
+package com.limitedtimedeal.benchmarks;
+
+import com.limitedtimedeal.exceptions.DuplicatePurchaseException;
+import com.limitedtimedeal.exceptions.PurchaseBacklogFullException;
+import com.limitedtimedeal.model.Product;
+import com.limitedtimedeal.service.DealService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of {@link DealService#buy} on the embedded H2 fixture.
+ * <ul>
+ *     <li>hotDeal*: every thread buys the same deal, with 1, 8 and 64 threads</li>
+ *     <li>spreadDeals: 64 threads buying random deals out of {@link #SPREAD_DEALS}</li>
+ *     <li>repeatBuyer: a user retrying a deal they already bought</li>
+ * </ul>
+ * Each iteration gets a fresh hot deal and buyers are handed out in order, so a
+ * buyer is only reused once all {@link #USERS} have bought in that iteration.
+ * {@link #purchaseMode} compares the in-memory reservation path with the
+ * per-deal actor shards. The admission limit is pinned at the largest thread
+ * count, so every call is a purchase attempt rather than a fast rejection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseBenchmark {
+
+    static final int USERS = 200_000;
+
+    static final int SPREAD_DEALS = 1_000;
+
+    static final int MAX_THREADS = 64;
+
+    private static final long UNLIMITED_STOCK = Long.MAX_VALUE / 2;
+
+    @Param({"memory", "actor"})
+    public String purchaseMode;
+
+    private DealFixture fixture;
+
+    private DealService dealService;
+
+    private Long hotDealId;
+
+    private Long[] spreadDealIds;
+
+    private Long repeatDealId;
+
+    private long repeatUserId;
+
+    private final AtomicLong buyers = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        fixture = new DealFixture(USERS, "deal.purchase.mode=" + purchaseMode,
+                "deal.admission.initial-limit=" + MAX_THREADS, "deal.admission.min-limit=" + MAX_THREADS);
+        dealService = fixture.dealService();
+        spreadDealIds = new Long[SPREAD_DEALS];
+        for (int i = 0; i < SPREAD_DEALS; i++) {
+            spreadDealIds[i] = fixture.createDeal(UNLIMITED_STOCK);
+        }
+        repeatDealId = fixture.createDeal(UNLIMITED_STOCK);
+        repeatUserId = fixture.userId(0);
+        dealService.buy(repeatUserId, repeatDealId);
+    }
+
+    @Setup(Level.Iteration)
+    public void freshHotDeal() {
+        hotDealId = fixture.createDeal(UNLIMITED_STOCK);
+        buyers.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        fixture.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Product hotDealThreads1() {
+        return buyHotDeal();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Product hotDealThreads8() {
+        return buyHotDeal();
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public Product hotDealThreads64() {
+        return buyHotDeal();
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public Product spreadDeals() {
+        Long dealId = spreadDealIds[ThreadLocalRandom.current().nextInt(SPREAD_DEALS)];
+        return buy(fixture.userId(ThreadLocalRandom.current().nextInt(fixture.userCount())), dealId);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object repeatBuyer() {
+        try {
+            return dealService.buy(repeatUserId, repeatDealId);
+        } catch (DuplicatePurchaseException e) {
+            return e;
+        }
+    }
+
+    private Product buyHotDeal() {
+        return buy(fixture.userId(buyers.getAndIncrement()), hotDealId);
+    }
+
+    private Product buy(long userId, Long dealId) {
+        try {
+            return dealService.buy(userId, dealId);
+        } catch (DuplicatePurchaseException | PurchaseBacklogFullException e) {
+            // Buyers wrapped around within the iteration, or the write-behind queue pushed back
+            return null;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.limitedtimedeal.benchmarks;
+
+import com.limitedtimedeal.service.StockCounter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of a single deal's stock counter with the number of stripes, from one
+ * plain CAS counter ({@code stripes = 1}) to 32 stripes, at 1, 8 and 32 threads.
+ * Pure in-memory; no application context is started.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockCounterBenchmark {
+
+    @Param({"1", "4", "16", "32"})
+    public int stripes;
+
+    private StockCounter counter;
+
+    @State(Scope.Thread)
+    public static class Buyer {
+        final long hash = ThreadLocalRandom.current().nextLong();
+    }
+
+    @Setup(Level.Iteration)
+    public void fillCounter() {
+        counter = StockCounter.of(Long.MAX_VALUE / 2, stripes);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean acquireThreads1(Buyer buyer) {
+        return counter.tryAcquire(buyer.hash);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean acquireThreads8(Buyer buyer) {
+        return counter.tryAcquire(buyer.hash);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public boolean acquireThreads32(Buyer buyer) {
+        return counter.tryAcquire(buyer.hash);
+    }
+}
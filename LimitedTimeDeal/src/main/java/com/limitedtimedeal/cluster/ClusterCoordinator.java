@@ -0,0 +1,359 @@
+package com.limitedtimedeal.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limitedtimedeal.exceptions.ClusterNodeUnavailableException;
+import com.limitedtimedeal.exceptions.DealNotOwnedException;
+import com.limitedtimedeal.exceptions.ForwardedPurchaseException;
+import com.limitedtimedeal.model.Product;
+import com.limitedtimedeal.service.ClaimWriteBehind;
+import com.limitedtimedeal.service.InventoryReservationEngine;
+import com.limitedtimedeal.service.PurchaseDedupFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Splits deals across the members of {@link ClusterProperties} by consistent
+ * hashing on the deal id. The owner of a deal keeps its stock counter and buyer
+ * set in memory; other nodes forward purchases of that deal to the owner over
+ * {@code /internal/cluster/buy}, passing on the buyer's idempotency key. Every
+ * node-to-node call carries {@code deal.cluster.secret}, and the internal
+ * endpoints refuse calls without it.
+ * <p>
+ * Every node starts from the full member list. Members ping each other every
+ * heartbeat interval and the ring is rebuilt from the members that answered
+ * within the failure timeout, so the deals of a node that leaves move to its
+ * ring successors, and a node that joins takes deals over from them.
+ * <p>
+ * Before a node sells a deal it has gained, it asks every other live member to
+ * release it over {@code /internal/cluster/release}. A releasing member stops
+ * selling the deal, waits for its purchases in flight, writes out its
+ * write-behind queue and flushes the sold units; only once all of them have
+ * done so does the new owner reload stock and buyers from the database. Until
+ * then, and for two heartbeats after a node released a deal, purchases of it
+ * are refused with {@link DealNotOwnedException}. An owner that crashes cannot
+ * release, so the claims still in its write-behind queue are not visible to its
+ * successor, which can oversell by that much.
+ */
+@Component
+@EnableConfigurationProperties(ClusterProperties.class)
+public class ClusterCoordinator {
+
+    public static final String INTERNAL_BUY_PATH = "/internal/cluster/buy";
+
+    public static final String PING_PATH = "/internal/cluster/ping";
+
+    public static final String RELEASE_PATH = "/internal/cluster/release";
+
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    private final ClusterProperties properties;
+
+    private final InventoryReservationEngine inventoryEngine;
+
+    private final PurchaseDedupFilter dedupFilter;
+
+    private final ClaimWriteBehind claimWriteBehind;
+
+    private final ObjectMapper objectMapper;
+
+    private final HttpClient httpClient;
+
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean pinging = new AtomicBoolean();
+
+    // Deals this node has taken over since it last gained them; done once the others released and it reloaded
+    private final Map<Long, CompletableFuture<Void>> owned = new ConcurrentHashMap<>();
+
+    // When this node last released each deal to another member
+    private final Map<Long, Long> released = new ConcurrentHashMap<>();
+
+    // Purchases in flight per deal, waited for on release
+    private final Map<Long, LongAdder> selling = new ConcurrentHashMap<>();
+
+    private volatile HashRing ring;
+
+    @Autowired
+    public ClusterCoordinator(ClusterProperties properties, InventoryReservationEngine inventoryEngine,
+                              PurchaseDedupFilter dedupFilter, ClaimWriteBehind claimWriteBehind,
+                              ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.inventoryEngine = inventoryEngine;
+        this.dedupFilter = dedupFilter;
+        this.claimWriteBehind = claimWriteBehind;
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(properties.getRpcTimeout())
+                .build();
+        if (properties.isEnabled() && (properties.getSelf() == null || !properties.getMembers().contains(properties.getSelf()))) {
+            throw new IllegalStateException("deal.cluster.self must be one of deal.cluster.members");
+        }
+        if (properties.isEnabled() && (properties.getSecret() == null || properties.getSecret().isBlank())) {
+            throw new IllegalStateException("deal.cluster.secret must be set");
+        }
+        if (!properties.isEnabled()) {
+            this.ring = new HashRing(List.of(String.valueOf(properties.getSelf())), properties.getVirtualNodes());
+            return;
+        }
+        // Every member counts as live until it misses the failure timeout, so no node starts out owning every deal
+        long now = System.currentTimeMillis();
+        properties.getMembers().forEach(member -> lastSeen.put(member, now));
+        this.ring = new HashRing(properties.getMembers(), properties.getVirtualNodes());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /** Whether purchases of the deal are handled on this node. */
+    public boolean isLocal(Long dealId) {
+        return !properties.isEnabled() || ring.ownerOf(dealId).equals(properties.getSelf());
+    }
+
+    /** Whether a node-to-node call carried the cluster's secret; always false when clustering is off. */
+    public boolean isTrusted(String secret) {
+        return properties.isEnabled() && secret != null
+                && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                properties.getSecret().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public List<String> liveMembers() {
+        return ring.members();
+    }
+
+    /**
+     * Whether this node runs cluster-wide housekeeping against the shared database:
+     * the first live member in URL order, or always when clustering is off.
+     */
+    public boolean runsMaintenance() {
+        return !properties.isEnabled()
+                || liveMembers().stream().sorted().findFirst().map(properties.getSelf()::equals).orElse(true);
+    }
+
+    /**
+     * Called before this node sells the deal. The first time after the deal moved
+     * here, every other live member is made to release it and its stock and
+     * buyers are then reloaded, so purchases made on the previous owner are
+     * counted. Throws {@link DealNotOwnedException} if a member did not release it.
+     */
+    public void takeOwnership(Long dealId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        CompletableFuture<Void> taken = owned.get(dealId);
+        if (taken == null) {
+            Long releasedAt = released.get(dealId);
+            if (releasedAt != null && System.currentTimeMillis() - releasedAt < releaseHoldMillis()) {
+                // The ring of the node this deal went to may not agree yet; don't take it straight back
+                throw new DealNotOwnedException(dealId);
+            }
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            taken = owned.putIfAbsent(dealId, mine);
+            if (taken == null) {
+                taken = mine;
+                try {
+                    released.remove(dealId);
+                    fence(dealId);
+                    inventoryEngine.flush();
+                    inventoryEngine.forget(dealId);
+                    dedupFilter.reload(dealId);
+                    mine.complete(null);
+                } catch (RuntimeException e) {
+                    owned.remove(dealId, mine);
+                    mine.completeExceptionally(e);
+                }
+            }
+        }
+        try {
+            taken.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Runs a purchase of a deal this node has taken over, unless the deal was
+     * released meanwhile; {@link #release} waits for the purchases in here.
+     */
+    public <T> T sell(Long dealId, Supplier<T> purchase) {
+        if (!properties.isEnabled()) {
+            return purchase.get();
+        }
+        LongAdder inFlight = selling.computeIfAbsent(dealId, id -> new LongAdder());
+        inFlight.increment();
+        try {
+            // Checked after counting in, so either the release waits for this purchase or it sees the release
+            CompletableFuture<Void> taken = owned.get(dealId);
+            if (taken == null || !taken.isDone() || taken.isCompletedExceptionally() || released.containsKey(dealId)) {
+                throw new DealNotOwnedException(dealId);
+            }
+            return purchase.get();
+        } finally {
+            inFlight.decrement();
+        }
+    }
+
+    /**
+     * Stops selling the deal on this node for another member that is taking it
+     * over: waits for purchases in flight, writes out the write-behind queue and
+     * flushes sold units. False if that did not finish within half the RPC timeout.
+     */
+    public boolean release(Long dealId) {
+        long now = System.currentTimeMillis();
+        released.put(dealId, now);
+        owned.remove(dealId);
+        long deadline = now + properties.getRpcTimeout().toMillis() / 2;
+        LongAdder inFlight = selling.get(dealId);
+        while (inFlight != null && inFlight.sum() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        if (!claimWriteBehind.awaitWritten(Math.max(0, deadline - System.currentTimeMillis()))) {
+            return false;
+        }
+        inventoryEngine.flush();
+        inventoryEngine.forget(dealId);
+        return true;
+    }
+
+    private void fence(Long dealId) {
+        List<CompletableFuture<Boolean>> releases = new ArrayList<>();
+        for (String member : ring.members()) {
+            if (member.equals(properties.getSelf())) {
+                continue;
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(member + RELEASE_PATH + "?dealId=" + dealId))
+                    .timeout(properties.getRpcTimeout())
+                    .header(SECRET_HEADER, properties.getSecret())
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            releases.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> response.statusCode() == 200)
+                    .exceptionally(e -> false));
+        }
+        for (CompletableFuture<Boolean> release : releases) {
+            if (!release.join()) {
+                log.warn("A member did not release deal {}, not selling it yet", dealId);
+                throw new DealNotOwnedException(dealId);
+            }
+        }
+    }
+
+    private long releaseHoldMillis() {
+        return properties.getHeartbeatInterval().toMillis() * 2;
+    }
+
+    /** Runs the purchase on the deal's owner and relays its answer; the key may be null. */
+    public Product forwardBuy(Long userId, Long dealId, String idempotencyKey) {
+        String owner = ring.ownerOf(dealId);
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                        URI.create(owner + INTERNAL_BUY_PATH + "?userId=" + userId + "&dealId=" + dealId))
+                .timeout(properties.getRpcTimeout())
+                .header(SECRET_HEADER, properties.getSecret())
+                .POST(HttpRequest.BodyPublishers.noBody());
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            request.header("Idempotency-Key", idempotencyKey);
+        }
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new ClusterNodeUnavailableException(dealId, owner);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClusterNodeUnavailableException(dealId, owner);
+        }
+        if (response.statusCode() != 200) {
+            throw new ForwardedPurchaseException(owner, response.statusCode(), response.body(),
+                    response.headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null));
+        }
+        try {
+            return objectMapper.readValue(response.body(), Product.class);
+        } catch (IOException e) {
+            throw new ClusterNodeUnavailableException(dealId, owner);
+        }
+    }
+
+    /**
+     * Pings the other members and rebuilds the ring once they answered or timed out.
+     * Does not wait for the answers, so a slow member never holds a scheduler thread;
+     * a round still in flight makes the next tick a no-op.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${deal.cluster.heartbeat-interval:PT1S}")
+    public void heartbeat() {
+        if (!properties.isEnabled() || !pinging.compareAndSet(false, true)) {
+            return;
+        }
+        List<CompletableFuture<Void>> pings = new ArrayList<>();
+        for (String member : properties.getMembers()) {
+            if (member.equals(properties.getSelf())) {
+                continue;
+            }
+            HttpRequest ping = HttpRequest.newBuilder(URI.create(member + PING_PATH))
+                    .timeout(properties.getRpcTimeout())
+                    .header(SECRET_HEADER, properties.getSecret())
+                    .GET()
+                    .build();
+            pings.add(httpClient.sendAsync(ping, HttpResponse.BodyHandlers.discarding())
+                    .thenAccept(response -> {
+                        if (response.statusCode() == 200) {
+                            lastSeen.put(member, System.currentTimeMillis());
+                        }
+                    })
+                    .exceptionally(e -> null));
+        }
+        CompletableFuture.allOf(pings.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+            try {
+                updateRing();
+            } finally {
+                pinging.set(false);
+            }
+        });
+    }
+
+    // Only runs at the end of a ping round, and rounds never overlap
+    private void updateRing() {
+        long cutoff = System.currentTimeMillis() - properties.getFailureTimeout().toMillis();
+        List<String> live = properties.getMembers().stream()
+                .filter(member -> member.equals(properties.getSelf()) || lastSeen.getOrDefault(member, 0L) >= cutoff)
+                .toList();
+        if (!live.equals(ring.members())) {
+            log.info("Cluster members changed from {} to {}", ring.members(), live);
+            HashRing next = new HashRing(live, properties.getVirtualNodes());
+            ring = next;
+            // Deals that moved away must be taken over again if they ever come back
+            owned.keySet().removeIf(dealId -> !next.ownerOf(dealId).equals(properties.getSelf()));
+        }
+    }
+}
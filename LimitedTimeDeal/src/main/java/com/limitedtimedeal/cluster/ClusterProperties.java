@@ -0,0 +1,38 @@
+package com.limitedtimedeal.cluster;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static membership of a deal cluster. Every node lists the same members and
+ * names itself in {@code self}; base URLs must match exactly, since the hash
+ * ring is built from them.
+ */
+@Data
+@ConfigurationProperties(prefix = "deal.cluster")
+public class ClusterProperties {
+
+    private boolean enabled = false;
+
+    /** Base URL other members use to reach this node, e.g. http://localhost:8080. */
+    private String self;
+
+    private List<String> members = new ArrayList<>();
+
+    /** Points per member on the hash ring; more points spread deals more evenly. */
+    private int virtualNodes = 128;
+
+    private Duration heartbeatInterval = Duration.ofSeconds(1);
+
+    /** A member that has not answered a heartbeat for this long loses its deals. */
+    private Duration failureTimeout = Duration.ofSeconds(3);
+
+    private Duration rpcTimeout = Duration.ofSeconds(2);
+
+    /** Shared by all members and sent on every node-to-node call; required when enabled. */
+    private String secret;
+}
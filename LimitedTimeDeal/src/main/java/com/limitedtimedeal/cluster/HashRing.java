@@ -0,0 +1,60 @@
+package com.limitedtimedeal.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring of cluster members. When a member leaves, only
+ * the deals it owned move, each to the next member on the ring. Every node
+ * computes the same ring from the same member list.
+ */
+final class HashRing {
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    private final List<String> members;
+
+    HashRing(Collection<String> members, int virtualNodes) {
+        this.members = List.copyOf(members);
+        for (String member : this.members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    List<String> members() {
+        return members;
+    }
+
+    String ownerOf(Long dealId) {
+        long point = mix(dealId);
+        Map.Entry<Long, String> owner = points.ceilingEntry(point);
+        return owner != null ? owner.getValue() : points.firstEntry().getValue();
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Deal ids are sequential; spread them over the whole ring
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,65 @@
+package com.limitedtimedeal.controller;
+
+import com.limitedtimedeal.cluster.ClusterCoordinator;
+import com.limitedtimedeal.model.Product;
+import com.limitedtimedeal.service.CatalogCache;
+import com.limitedtimedeal.service.DealService;
+import jakarta.websocket.server.PathParam;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Node-to-node endpoints of the deal cluster; not meant to be exposed to clients.
+ * Calls without the cluster's shared secret are refused.
+ */
+@RestController
+public class ClusterController {
+
+    @Autowired
+    private DealService dealService;
+
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @GetMapping(ClusterCoordinator.PING_PATH)
+    public ResponseEntity<List<String>> ping(
+            @RequestHeader(value = ClusterCoordinator.SECRET_HEADER, required = false) String secret){
+        if (!clusterCoordinator.isTrusted(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return new ResponseEntity<>(clusterCoordinator.liveMembers(), HttpStatus.OK);
+    }
+
+    @PostMapping(ClusterCoordinator.INTERNAL_BUY_PATH)
+    public ResponseEntity<byte[]> buy(@PathParam("userId") Long userId, @PathParam("dealId") Long dealId,
+                                      @RequestHeader(value = ClusterCoordinator.SECRET_HEADER, required = false) String secret,
+                                      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey){
+        if (!clusterCoordinator.isTrusted(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Product product = dealService.buyAsOwner(userId, dealId, idempotencyKey);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalogCache.productJson(product));
+    }
+
+    @PostMapping(ClusterCoordinator.RELEASE_PATH)
+    public ResponseEntity<Void> release(@PathParam("dealId") Long dealId,
+                                        @RequestHeader(value = ClusterCoordinator.SECRET_HEADER, required = false) String secret){
+        if (!clusterCoordinator.isTrusted(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.status(clusterCoordinator.release(dealId) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+}
@@ -1,44 +1,138 @@
 package com.limitedtimedeal.controller;
 
+import com.limitedtimedeal.dto.BulkDealResult;
 import com.limitedtimedeal.dto.DealDto;
+import com.limitedtimedeal.dto.DealView;
+import com.limitedtimedeal.dto.ProductView;
+import com.limitedtimedeal.dto.PurchaseHistory;
+import com.limitedtimedeal.dto.SaleReadiness;
+import com.limitedtimedeal.dto.UserView;
 import com.limitedtimedeal.model.Deal;
 import com.limitedtimedeal.model.Product;
 import com.limitedtimedeal.model.Users;
+import com.limitedtimedeal.service.ActiveDealSnapshot;
+import com.limitedtimedeal.service.CatalogCache;
 import com.limitedtimedeal.service.DealService;
+import com.limitedtimedeal.service.SaleArmer;
 import jakarta.websocket.server.PathParam;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/limitedtimedeal")
 public class DealController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private DealService dealService;
 
+    @Autowired
+    private ActiveDealSnapshot activeDealSnapshot;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private SaleArmer saleArmer;
+
     @PostMapping("/register")
-    public ResponseEntity<Users> register(@RequestBody Users user){
+    public ResponseEntity<UserView> register(@RequestBody Users user){
         Users savedUSer = dealService.register(user);
-        return new ResponseEntity<>(savedUSer, HttpStatus.CREATED);
+        return new ResponseEntity<>(UserView.from(savedUSer), HttpStatus.CREATED);
     }
 
     @PostMapping("/createDeal")
-    public ResponseEntity<Deal> createDeal(@RequestBody DealDto dealDto){
+    public ResponseEntity<DealView> createDeal(@RequestBody DealDto dealDto){
         Deal deal = dealService.createDeal(dealDto);
-        return new ResponseEntity<>(deal, HttpStatus.CREATED);
+        return new ResponseEntity<>(DealView.from(deal), HttpStatus.CREATED);
+    }
+
+    @PostMapping("/createDeals")
+    public ResponseEntity<List<BulkDealResult>> createDeals(@RequestBody List<DealDto> dealDtos){
+        List<BulkDealResult> results = dealService.createDeals(dealDtos);
+        return new ResponseEntity<>(results, HttpStatus.OK);
     }
 
     @PostMapping("/createProduct")
-    public ResponseEntity<Product> createProduct(@RequestBody Product product){
+    public ResponseEntity<ProductView> createProduct(@RequestBody Product product){
         Product savedProduct = dealService.createProduct(product);
-        return new ResponseEntity<>(savedProduct, HttpStatus.CREATED);
+        return new ResponseEntity<>(ProductView.from(savedProduct), HttpStatus.CREATED);
+    }
+
+    @GetMapping("/deals")
+    public ResponseEntity<byte[]> activeDeals(@RequestParam(defaultValue = "endTime") String sort,
+                                              @RequestParam(defaultValue = "0") int page,
+                                              @RequestParam(defaultValue = "50") int size,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        ActiveDealSnapshot.Sort order = switch (sort) {
+            case "endTime" -> ActiveDealSnapshot.Sort.END_TIME;
+            case "discount" -> ActiveDealSnapshot.Sort.DISCOUNT;
+            default -> null;
+        };
+        if (order == null || page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        String etag = activeDealSnapshot.etag(order, page, size);
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        ActiveDealSnapshot.Page listing = activeDealSnapshot.page(order, page, size);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(listing.etag())
+                .header("X-Total-Count", String.valueOf(listing.total()))
+                .body(listing.json());
+    }
+
+    @GetMapping("/history")
+    public ResponseEntity<List<PurchaseHistory>> history(@RequestParam Long userId,
+                                                         @RequestParam(defaultValue = "0") int page,
+                                                         @RequestParam(defaultValue = "50") int size){
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return new ResponseEntity<>(dealService.purchaseHistory(userId, page, size), HttpStatus.OK);
+    }
+
+    @PostMapping("/armDeal")
+    public ResponseEntity<SaleReadiness> armDeal(@RequestParam Long dealId){
+        return new ResponseEntity<>(saleArmer.arm(dealId), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("/saleReadiness")
+    public ResponseEntity<SaleReadiness> saleReadiness(@RequestParam Long dealId){
+        SaleReadiness readiness = saleArmer.readiness(dealId);
+        if (readiness == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return new ResponseEntity<>(readiness, HttpStatus.OK);
     }
 
     @GetMapping("/buy")
-    public ResponseEntity<Product> buy(@PathParam("userId") Long userId, @PathParam("dealId") Long dealId){
-        Product product = dealService.buy(userId, dealId);
-        return new ResponseEntity<>(product, HttpStatus.OK);
+    public ResponseEntity<byte[]> buy(@PathParam("userId") Long userId, @PathParam("dealId") Long dealId,
+                                      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey){
+        Product product = dealService.buy(userId, dealId, idempotencyKey);
+        return productResponse(product);
+    }
+
+    @GetMapping("/buyAsync")
+    public CompletableFuture<ResponseEntity<byte[]>> buyAsync(@PathParam("userId") Long userId, @PathParam("dealId") Long dealId,
+                                                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey){
+        return dealService.buyAsync(userId, dealId, idempotencyKey).thenApply(this::productResponse);
+    }
+
+    // Body is the product's ProductView JSON, serialized once per product
+    private ResponseEntity<byte[]> productResponse(Product product){
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalogCache.productJson(product));
     }
 }
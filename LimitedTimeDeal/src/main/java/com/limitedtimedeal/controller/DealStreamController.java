@@ -0,0 +1,23 @@
+package com.limitedtimedeal.controller;
+
+import com.limitedtimedeal.service.DealStatusPublisher;
+import jakarta.websocket.server.PathParam;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/limitedtimedeal")
+public class DealStreamController {
+
+    @Autowired
+    private DealStatusPublisher dealStatusPublisher;
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@PathParam("dealId") Long dealId){
+        return dealStatusPublisher.subscribe(dealId);
+    }
+}
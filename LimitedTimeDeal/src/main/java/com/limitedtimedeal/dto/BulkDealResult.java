@@ -0,0 +1,15 @@
+package com.limitedtimedeal.dto;
+
+/**
+ * Outcome of one entry of a bulk deal creation, in request order.
+ */
+public record BulkDealResult(int index, Long dealId, String error) {
+
+    public static BulkDealResult created(int index, Long dealId) {
+        return new BulkDealResult(index, dealId, null);
+    }
+
+    public static BulkDealResult rejected(int index, String error) {
+        return new BulkDealResult(index, null, error);
+    }
+}
@@ -14,9 +14,15 @@ public class DealDto {
 
     private Long productId;
 
+    // Optional; the sale starts right away when absent
+    private LocalDateTime startTime;
+
     private LocalDateTime endTime;
 
     private double discount;
 
     private Long productCount;
+
+    // Optional; more than one stripe spreads a very hot deal's stock counter over several cache lines
+    private Integer stockStripes;
 }
@@ -0,0 +1,7 @@
+package com.limitedtimedeal.dto;
+
+/**
+ * Live stock and validity of a deal, as pushed to stream subscribers.
+ */
+public record DealStatus(Long dealId, long remaining, boolean valid) {
+}
@@ -0,0 +1,17 @@
+package com.limitedtimedeal.dto;
+
+import com.limitedtimedeal.model.Deal;
+
+import java.time.LocalDateTime;
+
+/**
+ * Deal as returned by the API, without any buyer information.
+ */
+public record DealView(Long id, Long productId, LocalDateTime startTime, LocalDateTime endTime, double discount,
+                       Long productCount, long sold, int stockStripes, boolean valid) {
+
+    public static DealView from(Deal deal) {
+        return new DealView(deal.getId(), deal.getProductId(), deal.getStartTime(), deal.getEndTime(),
+                deal.getDiscount(), deal.getProductCount(), deal.getSold(), deal.getStockStripes(), deal.isValid());
+    }
+}
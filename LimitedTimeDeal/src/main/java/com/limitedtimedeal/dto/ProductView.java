@@ -0,0 +1,14 @@
+package com.limitedtimedeal.dto;
+
+import com.limitedtimedeal.model.Product;
+
+/**
+ * Product as returned by the API. Products never change, so {@link com.limitedtimedeal.service.CatalogCache}
+ * keeps this serialized once per product for the purchase endpoints.
+ */
+public record ProductView(Long id, String productName) {
+
+    public static ProductView from(Product product) {
+        return new ProductView(product.getId(), product.getProductName());
+    }
+}
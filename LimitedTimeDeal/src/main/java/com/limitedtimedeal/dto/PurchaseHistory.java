@@ -0,0 +1,10 @@
+package com.limitedtimedeal.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One purchase of an archived deal, as returned by the history endpoint.
+ */
+public record PurchaseHistory(Long dealId, Long productId, double discount, LocalDateTime endTime,
+                              LocalDateTime claimedAt) {
+}
@@ -0,0 +1,24 @@
+package com.limitedtimedeal.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of arming a deal ahead of its sale start; see {@link com.limitedtimedeal.service.SaleArmer}.
+ * The counts are only filled in once the deal is {@link State#READY}.
+ */
+public record SaleReadiness(Long dealId, State state, LocalDateTime startTime, long stockLoaded,
+                            int poolConnections, int warmupPurchases, long warmupMillis, LocalDateTime armedAt,
+                            String error) {
+
+    public enum State {
+        ARMING, READY, FAILED
+    }
+
+    public static SaleReadiness arming(Long dealId, LocalDateTime startTime) {
+        return new SaleReadiness(dealId, State.ARMING, startTime, 0, 0, 0, 0, null, null);
+    }
+
+    public static SaleReadiness failed(Long dealId, LocalDateTime startTime, String error) {
+        return new SaleReadiness(dealId, State.FAILED, startTime, 0, 0, 0, 0, null, error);
+    }
+}
@@ -0,0 +1,13 @@
+package com.limitedtimedeal.dto;
+
+import com.limitedtimedeal.model.Users;
+
+/**
+ * Registered user as returned by the API.
+ */
+public record UserView(Long id, String userName) {
+
+    public static UserView from(Users user) {
+        return new UserView(user.getId(), user.getUserName());
+    }
+}
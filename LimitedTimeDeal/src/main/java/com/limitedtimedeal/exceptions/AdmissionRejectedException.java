@@ -0,0 +1,16 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final Long dealId;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(Long dealId, long retryAfterSeconds) {
+        super("Deal " + dealId + " is busy, retry in " + retryAfterSeconds + " seconds.");
+        this.dealId = dealId;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
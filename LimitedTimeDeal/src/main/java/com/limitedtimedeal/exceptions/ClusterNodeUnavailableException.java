@@ -0,0 +1,17 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class ClusterNodeUnavailableException extends RuntimeException {
+
+    private final Long dealId;
+
+    private final String owner;
+
+    public ClusterNodeUnavailableException(Long dealId, String owner) {
+        super("The node owning deal " + dealId + " could not be reached, try again shortly.");
+        this.dealId = dealId;
+        this.owner = owner;
+    }
+}
@@ -0,0 +1,14 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class DealExpiredException extends RuntimeException {
+
+    private final Long dealId;
+
+    public DealExpiredException(Long dealId) {
+        super("Deal " + dealId + " is no longer active.");
+        this.dealId = dealId;
+    }
+}
@@ -0,0 +1,14 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class DealNotOwnedException extends RuntimeException {
+
+    private final Long dealId;
+
+    public DealNotOwnedException(Long dealId) {
+        super("Deal " + dealId + " is moving to another node, try again shortly.");
+        this.dealId = dealId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+public class DealNotStartedException extends RuntimeException {
+
+    private final Long dealId;
+
+    private final LocalDateTime startTime;
+
+    public DealNotStartedException(Long dealId, LocalDateTime startTime) {
+        super("Deal " + dealId + " starts at " + startTime + ".");
+        this.dealId = dealId;
+        this.startTime = startTime;
+    }
+}
@@ -0,0 +1,14 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class DealSoldOutException extends RuntimeException {
+
+    private final Long dealId;
+
+    public DealSoldOutException(Long dealId) {
+        super("Deal " + dealId + " is sold out.");
+        this.dealId = dealId;
+    }
+}
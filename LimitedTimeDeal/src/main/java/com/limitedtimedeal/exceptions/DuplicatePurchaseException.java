@@ -0,0 +1,16 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class DuplicatePurchaseException extends RuntimeException {
+
+    private final Long userId;
+    private final Long dealId;
+
+    public DuplicatePurchaseException(Long userId, Long dealId) {
+        super("User " + userId + " has already bought deal " + dealId);
+        this.userId = userId;
+        this.dealId = dealId;
+    }
+}
@@ -0,0 +1,23 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+/**
+ * The node that owns a deal rejected a forwarded purchase; its response is relayed as is.
+ */
+@Getter
+public class ForwardedPurchaseException extends RuntimeException {
+
+    private final int status;
+
+    private final byte[] body;
+
+    private final String retryAfter;
+
+    public ForwardedPurchaseException(String owner, int status, byte[] body, String retryAfter) {
+        super("Purchase rejected by " + owner + " with status " + status);
+        this.status = status;
+        this.body = body;
+        this.retryAfter = retryAfter;
+    }
+}
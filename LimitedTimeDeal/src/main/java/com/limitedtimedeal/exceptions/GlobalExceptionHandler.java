@@ -1,7 +1,9 @@
 package com.limitedtimedeal.exceptions;
 
 import com.limitedtimedeal.response.Response;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -31,4 +33,94 @@ public class GlobalExceptionHandler {
         map.put("Item Id", exception.getItemId()+"");
         return new ResponseEntity<>(new Response(map), HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(DealSoldOutException.class)
+    public ResponseEntity<Response> dealSoldOutException(DealSoldOutException exception){
+        Map<String, String> map = new HashMap<>();
+        map.put("message", exception.getMessage());
+        map.put("Deal Id", exception.getDealId()+"");
+        return new ResponseEntity<>(new Response(map), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(DuplicatePurchaseException.class)
+    public ResponseEntity<Response> duplicatePurchaseException(DuplicatePurchaseException exception){
+        Map<String, String> map = new HashMap<>();
+        map.put("message", exception.getMessage());
+        map.put("User Id", exception.getUserId()+"");
+        map.put("Deal Id", exception.getDealId()+"");
+        return new ResponseEntity<>(new Response(map), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(DealExpiredException.class)
+    public ResponseEntity<Response> dealExpiredException(DealExpiredException exception){
+        Map<String, String> map = new HashMap<>();
+        map.put("message", exception.getMessage());
+        map.put("Deal Id", exception.getDealId()+"");
+        return new ResponseEntity<>(new Response(map), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(DealNotStartedException.class)
+    public ResponseEntity<Response> dealNotStartedException(DealNotStartedException exception){
+        Map<String, String> map = new HashMap<>();
+        map.put("message", exception.getMessage());
+        map.put("Deal Id", exception.getDealId()+"");
+        map.put("Start Time", exception.getStartTime()+"");
+        return new ResponseEntity<>(new Response(map), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(PurchaseBacklogFullException.class)
+    public ResponseEntity<Response> purchaseBacklogFullException(PurchaseBacklogFullException exception){
+        Map<String, String> map = new HashMap<>();
+        map.put("message", exception.getMessage());
+        map.put("Deal Id", exception.getDealId()+"");
+        return new ResponseEntity<>(new Response(map), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Response> admissionRejectedException(AdmissionRejectedException exception){
+        Map<String, String> map = new HashMap<>();
+        map.put("message", exception.getMessage());
+        map.put("Deal Id", exception.getDealId()+"");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(new Response(map));
+    }
+
+    @ExceptionHandler(IdempotencyKeyReuseException.class)
+    public ResponseEntity<Response> idempotencyKeyReuseException(IdempotencyKeyReuseException exception){
+        Map<String, String> map = new HashMap<>();
+        map.put("message", exception.getMessage());
+        map.put("Idempotency Key", exception.getIdempotencyKey());
+        map.put("Deal Id", exception.getDealId()+"");
+        return new ResponseEntity<>(new Response(map), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(ClusterNodeUnavailableException.class)
+    public ResponseEntity<Response> clusterNodeUnavailableException(ClusterNodeUnavailableException exception){
+        Map<String, String> map = new HashMap<>();
+        map.put("message", exception.getMessage());
+        map.put("Deal Id", exception.getDealId()+"");
+        return new ResponseEntity<>(new Response(map), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(DealNotOwnedException.class)
+    public ResponseEntity<Response> dealNotOwnedException(DealNotOwnedException exception){
+        Map<String, String> map = new HashMap<>();
+        map.put("message", exception.getMessage());
+        map.put("Deal Id", exception.getDealId()+"");
+        // The ring settles within a heartbeat
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new Response(map));
+    }
+
+    @ExceptionHandler(ForwardedPurchaseException.class)
+    public ResponseEntity<byte[]> forwardedPurchaseException(ForwardedPurchaseException exception){
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(exception.getStatus())
+                .contentType(MediaType.APPLICATION_JSON);
+        if (exception.getRetryAfter() != null) {
+            response.header(HttpHeaders.RETRY_AFTER, exception.getRetryAfter());
+        }
+        return response.body(exception.getBody());
+    }
 }
@@ -0,0 +1,18 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class IdempotencyKeyReuseException extends RuntimeException {
+
+    private final String idempotencyKey;
+
+    private final Long dealId;
+
+    public IdempotencyKeyReuseException(String idempotencyKey, Long originalDealId, Long dealId) {
+        super("Idempotency key " + idempotencyKey + " was already used for deal " + originalDealId
+                + " and cannot be reused for deal " + dealId + ".");
+        this.idempotencyKey = idempotencyKey;
+        this.dealId = dealId;
+    }
+}
@@ -0,0 +1,14 @@
+package com.limitedtimedeal.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class PurchaseBacklogFullException extends RuntimeException {
+
+    private final Long dealId;
+
+    public PurchaseBacklogFullException(Long dealId) {
+        super("Too many pending purchases, deal " + dealId + " could not be bought right now.");
+        this.dealId = dealId;
+    }
+}
@@ -0,0 +1,108 @@
+package com.limitedtimedeal.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.limitedtimedeal.response.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects callers that exceed their endpoint's rate before the request reaches
+ * {@code DealController}. Every limited request must get a token from both the
+ * bucket of its client IP and, when a {@code userId} parameter is present,
+ * the bucket of that user; a request one bucket rejects takes nothing from the
+ * other, so a throttled user does not use up its IP's allowance. Buckets live
+ * in a size-bounded cache that drops idle entries, so memory stays flat however
+ * many distinct keys show up.
+ */
+@Component
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String API_PREFIX = "/api/limitedtimedeal/";
+
+    private final RateLimitProperties properties;
+
+    private final MeterRegistry registry;
+
+    private final ObjectMapper objectMapper;
+
+    private final Cache<String, TokenBucket> buckets;
+
+    @Autowired
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry registry, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.registry = registry;
+        this.objectMapper = objectMapper;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxKeys())
+                .expireAfterAccess(properties.getIdleExpiry())
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || !request.getRequestURI().startsWith(API_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String endpoint = request.getRequestURI().substring(API_PREFIX.length());
+        RateLimitProperties.EndpointLimits limits = properties.getEndpoints().get(endpoint);
+        if (limits == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long now = System.nanoTime();
+        String userId = request.getParameter("userId");
+        long waitNanos = 0;
+        String keyType = null;
+        TokenBucket ipBucket = null;
+        if (limits.getIp() != null) {
+            ipBucket = bucket(endpoint + "|ip|" + request.getRemoteAddr(), limits.getIp(), now);
+            waitNanos = ipBucket.tryConsume(now);
+            keyType = "ip";
+        }
+        if (waitNanos == 0 && limits.getUser() != null && userId != null) {
+            waitNanos = bucket(endpoint + "|user|" + userId, limits.getUser(), now).tryConsume(now);
+            keyType = "user";
+            if (waitNanos != 0 && ipBucket != null) {
+                ipBucket.refund();
+            }
+        }
+        if (waitNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        registry.counter("deal.ratelimit.rejected", "endpoint", endpoint, "key", keyType).increment();
+        reject(response, waitNanos);
+    }
+
+    private TokenBucket bucket(String key, RateLimitProperties.Limit limit, long now) {
+        return buckets.get(key, k -> new TokenBucket(limit.getPermitsPerSecond(), limit.getBurst(), now));
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new Response(Map.of("message", "Too many requests")));
+    }
+}
@@ -0,0 +1,45 @@
+package com.limitedtimedeal.filter;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Token-bucket limits per endpoint, keyed by the last path segment of the deal
+ * API, with separate limits per user and per client IP
+ * (e.g. {@code deal.rate-limit.endpoints.buy.user.permits-per-second=5}).
+ * Endpoints or key types without an entry are not limited.
+ */
+@Data
+@ConfigurationProperties(prefix = "deal.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /** Upper bound on buckets kept in memory; least recently used ones are evicted. */
+    private long maxKeys = 1_000_000;
+
+    /** Buckets idle for this long are full again anyway and are dropped. */
+    private Duration idleExpiry = Duration.ofMinutes(1);
+
+    private Map<String, EndpointLimits> endpoints = new HashMap<>();
+
+    @Data
+    public static class EndpointLimits {
+
+        private Limit user;
+
+        private Limit ip;
+    }
+
+    @Data
+    public static class Limit {
+
+        private double permitsPerSecond = 10;
+
+        private int burst = 10;
+    }
+}
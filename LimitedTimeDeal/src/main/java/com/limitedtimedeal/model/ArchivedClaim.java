@@ -0,0 +1,36 @@
+package com.limitedtimedeal.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A deal_users row of an archived deal, keeping its original id. Indexed by
+ * (user_id, claimed_at) for a user's purchase history; nothing is ever looked
+ * up by (deal_id, user_id) here, so the unique index of the hot table is not
+ * carried over.
+ */
+@Entity
+@Table(name = "archived_deal_users",
+        indexes = @Index(name = "idx_archived_deal_users_user_claimed", columnList = "user_id, claimed_at"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArchivedClaim {
+
+    @Id
+    @Column(nullable = false)
+    private Long id;
+
+    @Column(name = "deal_id", nullable = false)
+    private Long dealId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "claimed_at", nullable = false)
+    private LocalDateTime claimedAt;
+}
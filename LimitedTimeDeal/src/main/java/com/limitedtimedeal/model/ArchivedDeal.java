@@ -0,0 +1,61 @@
+package com.limitedtimedeal.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * A deal moved out of the hot deal table by the {@code DealArchiver} once it
+ * ended more than the retention period ago. Keeps the deal's own id and only
+ * what history queries need; live-only columns such as the stock stripes are
+ * dropped.
+ */
+@Entity
+@Table(name = "archived_deal")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArchivedDeal {
+
+    @Id
+    @Column(nullable = false)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private LocalDateTime startTime;
+
+    @Column(nullable = false)
+    private LocalDateTime endTime;
+
+    @Column(nullable = false)
+    private double discount;
+
+    @Column(nullable = false)
+    private Long productCount;
+
+    @Column(nullable = false)
+    private long sold;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ArchivedDeal deal = (ArchivedDeal) o;
+        return Objects.equals(id, deal.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
@@ -7,28 +7,35 @@ import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
 import java.util.Objects;
-import java.util.Set;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_deal_valid_end_time_id", columnList = "is_valid, end_time, id"),
+        @Index(name = "idx_deal_start_time", columnList = "start_time")})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Deal {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dealSeq")
+    @SequenceGenerator(name = "dealSeq", sequenceName = "deal_seq", allocationSize = 50)
     @Column(nullable = false)
     private Long id;
 
     @Column(nullable = false)
     Long productId;
 
-    @CreationTimestamp
-    @Column(nullable = false,updatable = false)
+    // Scheduled start of the sale, in the same zone as endTime; purchases before it are rejected
+    @Column(nullable = false,updatable = true)
     LocalDateTime startTime;
 
+    // Nullable so ddl-auto can add it to deal tables created before it existed
+    @CreationTimestamp
+    @Column(updatable = false)
+    LocalDateTime createdAt;
+
     @Column(nullable = false,updatable = true)
     LocalDateTime endTime;
 
@@ -40,14 +47,13 @@ public class Deal {
     @Column(nullable = false, updatable = true)
     private Long productCount;
 
-    @ManyToMany(fetch = FetchType.EAGER)
-    @JoinTable(
-            name = "deal_users",
-            joinColumns = @JoinColumn(name = "deal_id"),
-            inverseJoinColumns = @JoinColumn(name = "user_id")
-    )
-    private Set<Users> users = new HashSet<>();
-    
+    // Only ever incremented through DealRepository.addSold so entity saves can't overwrite it
+    @Column(nullable = false, updatable = false)
+    private long sold;
+
+    @Column(nullable = false)
+    private int stockStripes = 1;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
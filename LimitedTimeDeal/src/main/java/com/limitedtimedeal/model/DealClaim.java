@@ -0,0 +1,43 @@
+package com.limitedtimedeal.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One purchase of a deal by a user. The unique (deal_id, user_id) index makes
+ * both the "already bought" check and the insert single indexed operations.
+ */
+@Entity
+@Table(name = "deal_users",
+        uniqueConstraints = @UniqueConstraint(name = "uk_deal_users_deal_user", columnNames = {"deal_id", "user_id"}))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DealClaim {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dealUsersSeq")
+    @SequenceGenerator(name = "dealUsersSeq", sequenceName = "deal_users_seq", allocationSize = 50)
+    @Column(nullable = false)
+    private Long id;
+
+    @Column(name = "deal_id", nullable = false)
+    private Long dealId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime claimedAt;
+
+    public DealClaim(Long dealId, Long userId) {
+        this.dealId = dealId;
+        this.userId = userId;
+    }
+}
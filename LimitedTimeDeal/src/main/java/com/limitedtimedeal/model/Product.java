@@ -11,7 +11,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class Product {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "productSeq")
+    @SequenceGenerator(name = "productSeq", sequenceName = "product_seq", allocationSize = 50)
     @Column(nullable = false)
     private Long id;
 
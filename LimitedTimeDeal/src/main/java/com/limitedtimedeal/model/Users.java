@@ -5,22 +5,17 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.HashSet;
-import java.util.Set;
-
 @Entity
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Users {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "usersSeq")
+    @SequenceGenerator(name = "usersSeq", sequenceName = "users_seq", allocationSize = 50)
     @Column(nullable = false)
     private Long id;
 
     @Column(nullable = false)
     String userName;
-
-    @ManyToMany(mappedBy = "users")
-    private Set<Deal> deals = new HashSet<>();
 }
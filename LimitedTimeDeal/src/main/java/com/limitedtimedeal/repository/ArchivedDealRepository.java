@@ -0,0 +1,35 @@
+package com.limitedtimedeal.repository;
+
+import com.limitedtimedeal.dto.PurchaseHistory;
+import com.limitedtimedeal.model.ArchivedDeal;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedDealRepository extends JpaRepository<ArchivedDeal, Long> {
+
+    /** Copies the deals into the archive; the caller deletes them from the hot table in the same transaction. */
+    @Modifying
+    @Query("INSERT INTO ArchivedDeal (id, productId, startTime, endTime, discount, productCount, sold, archivedAt) "
+            + "SELECT d.id, d.productId, d.startTime, d.endTime, d.discount, d.productCount, d.sold, :archivedAt "
+            + "FROM Deal d WHERE d.id IN :dealIds")
+    int copyDeals(@Param("dealIds") Collection<Long> dealIds, @Param("archivedAt") LocalDateTime archivedAt);
+
+    @Modifying
+    @Query("INSERT INTO ArchivedClaim (id, dealId, userId, claimedAt) "
+            + "SELECT c.id, c.dealId, c.userId, c.claimedAt FROM DealClaim c WHERE c.dealId IN :dealIds")
+    int copyClaims(@Param("dealIds") Collection<Long> dealIds);
+
+    @Query("SELECT new com.limitedtimedeal.dto.PurchaseHistory(c.dealId, d.productId, d.discount, d.endTime, c.claimedAt) "
+            + "FROM ArchivedClaim c JOIN ArchivedDeal d ON d.id = c.dealId "
+            + "WHERE c.userId = :userId ORDER BY c.claimedAt DESC")
+    List<PurchaseHistory> findPurchaseHistory(@Param("userId") Long userId, Pageable page);
+}
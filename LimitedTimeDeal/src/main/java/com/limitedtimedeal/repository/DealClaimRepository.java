@@ -0,0 +1,32 @@
+package com.limitedtimedeal.repository;
+
+import com.limitedtimedeal.model.DealClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface DealClaimRepository extends JpaRepository<DealClaim, Long> {
+
+    @Query("SELECT c.dealId AS dealId, c.userId AS userId FROM DealClaim c")
+    Stream<ClaimKey> streamAllKeys();
+
+    @Query("SELECT c.userId FROM DealClaim c WHERE c.dealId = :dealId")
+    List<Long> findUserIdsByDealId(@Param("dealId") Long dealId);
+
+    @Modifying
+    @Query("DELETE FROM DealClaim c WHERE c.dealId IN :dealIds")
+    int deleteByDealIds(@Param("dealIds") Collection<Long> dealIds);
+
+    interface ClaimKey {
+        Long getDealId();
+
+        Long getUserId();
+    }
+}
@@ -2,6 +2,7 @@ package com.limitedtimedeal.repository;
 
 import com.limitedtimedeal.model.Deal;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,15 +10,101 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DealRepository extends JpaRepository<Deal, Long> {
 
 
+    /**
+     * Next chunk of the expiry sweep, read in order from the (is_valid, end_time, id)
+     * index. isValid is constant here but must lead the ORDER BY, or H2 sorts the whole
+     * expired range instead of stopping after one chunk.
+     */
+    @Query("SELECT d.id FROM Deal d WHERE d.isValid = true AND d.endTime < :currentTime "
+            + "ORDER BY d.isValid, d.endTime, d.id")
+    List<Long> findExpiredIds(@Param("currentTime") LocalDateTime currentTime, Pageable chunk);
+
+    /**
+     * Next batch for the archiver: deactivated deals that ended before the cutoff, read
+     * from the same index as {@link #findExpiredIds}.
+     */
+    @Query("SELECT d.id FROM Deal d WHERE d.isValid = false AND d.endTime < :cutoff "
+            + "ORDER BY d.isValid, d.endTime, d.id")
+    List<Long> findArchivableIds(@Param("cutoff") LocalDateTime cutoff, Pageable batch);
+
+    @Modifying
+    @Query("DELETE FROM Deal d WHERE d.id IN :dealIds")
+    int deleteDeals(@Param("dealIds") Collection<Long> dealIds);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Deal d SET d.sold = d.sold + :units WHERE d.id = :dealId")
+    int addSold(@Param("dealId") Long dealId, @Param("units") long units);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Deal d SET d.isValid = false WHERE d.isValid = true AND d.id IN :dealIds")
+    int deactivateDeals(@Param("dealIds") Collection<Long> dealIds);
+
+    /**
+     * Claims one unit for the user in a single statement: the conditional update
+     * bumps {@code sold} only while the deal is live, has started and has stock, and the
+     * claim row is inserted from the updated row (H2 data change delta table;
+     * a CTE with UPDATE ... RETURNING on PostgreSQL). Returns 1 when the unit
+     * was claimed and 0 otherwise. A repeat buyer violates the unique
+     * (deal_id, user_id) index, which undoes the whole statement.
+     * <p>
+     * Each call takes a fresh value of the pooled sequence as id, so it never
+     * collides with the id blocks Hibernate reserves from the same sequence.
+     */
     @Modifying
     @Transactional
-    @Query("UPDATE Deal d SET d.isValid = false WHERE d.isValid = true AND d.endTime < :currentTime")
-    int deactivateExpiredDeals(@Param("currentTime") LocalDateTime currentTime); // Or @Param("currentTime") Date currentTime
+    @Query(value = "INSERT INTO deal_users (id, deal_id, user_id, claimed_at) "
+            + "SELECT NEXT VALUE FOR deal_users_seq, d.id, :userId, CURRENT_TIMESTAMP "
+            + "FROM FINAL TABLE (UPDATE deal SET sold = sold + 1 WHERE id = :dealId AND is_valid "
+            + "AND sold < product_count AND start_time <= :currentTime AND end_time > :currentTime "
+            + "AND EXISTS (SELECT 1 FROM users u WHERE u.id = :userId)) d", nativeQuery = true)
+    int claimUnit(@Param("dealId") Long dealId, @Param("userId") Long userId,
+                  @Param("currentTime") LocalDateTime currentTime);
+
+    @Query("SELECT d.id AS id, d.productCount AS productCount, d.sold AS sold, d.endTime AS endTime, d.isValid AS valid, "
+            + "d.stockStripes AS stockStripes, d.startTime AS startTime, "
+            + "(SELECT COUNT(c) FROM DealClaim c WHERE c.dealId = d.id) AS claimed "
+            + "FROM Deal d WHERE d.id = :dealId")
+    Optional<StockView> findStockById(@Param("dealId") Long dealId);
+
+    @Query("SELECT d.id AS id, d.productCount AS productCount, d.sold AS sold, d.endTime AS endTime, d.isValid AS valid, "
+            + "d.stockStripes AS stockStripes, d.startTime AS startTime, "
+            + "(SELECT COUNT(c) FROM DealClaim c WHERE c.dealId = d.id) AS claimed "
+            + "FROM Deal d WHERE d.isValid = true")
+    List<StockView> findActiveStock();
+
+    @Query("SELECT d FROM Deal d WHERE d.isValid = true")
+    List<Deal> findActive();
+
+    /** Live deals whose sale starts within [from, to), for the sale armer. */
+    @Query("SELECT d.id FROM Deal d WHERE d.startTime >= :from AND d.startTime < :to AND d.isValid = true")
+    List<Long> findIdsStartingBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    interface StockView {
+        Long getId();
+
+        Long getProductCount();
+
+        long getSold();
+
+        /** Committed deal_users rows; unlike {@code sold}, never behind the claims. */
+        long getClaimed();
+
+        LocalDateTime getStartTime();
+
+        LocalDateTime getEndTime();
 
+        boolean getValid();
 
+        int getStockStripes();
+    }
 }
@@ -1,7 +1,14 @@
 package com.limitedtimedeal.repository;
 
 import com.limitedtimedeal.model.Users;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 
 public interface UserRepository extends JpaRepository<Users, Long> {
+
+    @Query("SELECT u.id FROM Users u ORDER BY u.id")
+    List<Long> findIds(Pageable page);
 }
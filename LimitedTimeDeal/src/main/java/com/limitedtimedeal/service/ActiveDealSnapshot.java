@@ -0,0 +1,150 @@
+package com.limitedtimedeal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limitedtimedeal.dto.DealView;
+import com.limitedtimedeal.model.Deal;
+import com.limitedtimedeal.repository.DealRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Immutable, pre-serialized listing of the active deals. Readers take a page of
+ * the current {@link Snapshot} without locks or database access. Changes only
+ * mark deals as dirty; a refresh tick reloads just those deals, re-serializes
+ * them and publishes a new snapshot with both sort orders precomputed, so the
+ * listing trails writes by at most {@code deal.listing.refresh-ms}.
+ */
+@Component
+public class ActiveDealSnapshot {
+
+    public enum Sort {
+        END_TIME(Comparator.comparing((Entry entry) -> entry.view().endTime())
+                .thenComparing(entry -> entry.view().id())),
+        DISCOUNT(Comparator.comparingDouble((Entry entry) -> entry.view().discount()).reversed()
+                .thenComparing(entry -> entry.view().id()));
+
+        private final Comparator<Entry> order;
+
+        Sort(Comparator<Entry> order) {
+            this.order = order;
+        }
+    }
+
+    /** One page of the listing as a ready-to-send JSON array. */
+    public record Page(byte[] json, String etag, int total) {
+    }
+
+    private static final int RELOAD_CHUNK_SIZE = 1000;
+
+    private final DealRepository dealRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean reloadAll = new AtomicBoolean(true);
+
+    // Only touched by the refresh tick
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    private volatile Snapshot snapshot = new Snapshot(0, Map.of(Sort.END_TIME, new Entry[0], Sort.DISCOUNT, new Entry[0]));
+
+    @Autowired
+    public ActiveDealSnapshot(DealRepository dealRepository, ObjectMapper objectMapper) {
+        this.dealRepository = dealRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public Page page(Sort sort, int page, int size) {
+        Snapshot current = snapshot;
+        Entry[] ordered = current.bySort().get(sort);
+        int from = (int) Math.min((long) page * size, ordered.length);
+        int to = (int) Math.min((long) from + size, ordered.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + (to - from) * 256);
+        out.write('[');
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                out.write(',');
+            }
+            out.writeBytes(ordered[i].json());
+        }
+        out.write(']');
+        return new Page(out.toByteArray(), etag(current, sort, page, size), ordered.length);
+    }
+
+    /** ETag of the page in the current snapshot, to answer conditional requests without building the page. */
+    public String etag(Sort sort, int page, int size) {
+        return etag(snapshot, sort, page, size);
+    }
+
+    /** Notes that the deal was created or that its stock or validity changed. */
+    public void markChanged(Long dealId) {
+        dirty.add(dealId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${deal.listing.refresh-ms:500}")
+    public synchronized void refresh() {
+        if (reloadAll.getAndSet(false)) {
+            dirty.clear();
+            entries.clear();
+            dealRepository.findActive().forEach(this::put);
+        } else if (!dirty.isEmpty()) {
+            List<Long> dealIds = new ArrayList<>(dirty);
+            dirty.removeAll(dealIds);
+            dealIds.forEach(entries::remove);
+            // Bounded IN lists; a sweep can mark hundreds of thousands of deals at once
+            for (int from = 0; from < dealIds.size(); from += RELOAD_CHUNK_SIZE) {
+                dealRepository.findAllById(dealIds.subList(from, Math.min(from + RELOAD_CHUNK_SIZE, dealIds.size())))
+                        .forEach(this::put);
+            }
+        } else {
+            return;
+        }
+        Map<Sort, Entry[]> bySort = new HashMap<>();
+        for (Sort sort : Sort.values()) {
+            Entry[] ordered = entries.values().toArray(new Entry[0]);
+            Arrays.sort(ordered, sort.order);
+            bySort.put(sort, ordered);
+        }
+        snapshot = new Snapshot(snapshot.version() + 1, Map.copyOf(bySort));
+    }
+
+    private static String etag(Snapshot snapshot, Sort sort, int page, int size) {
+        return "\"" + snapshot.version() + "-" + sort.name().toLowerCase() + "-" + page + "-" + size + "\"";
+    }
+
+    private void put(Deal deal) {
+        if (!deal.isValid()) {
+            return;
+        }
+        DealView view = DealView.from(deal);
+        try {
+            entries.put(deal.getId(), new Entry(view, objectMapper.writeValueAsBytes(view)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Entry(DealView view, byte[] json) {
+    }
+
+    private record Snapshot(long version, Map<Sort, Entry[]> bySort) {
+    }
+}
@@ -0,0 +1,158 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.exceptions.AdmissionRejectedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Caps the purchase work holding a database connection per deal. Requests over
+ * the limit fail fast with a retry-after hint instead of queueing on the JDBC
+ * pool. Each deal's limit adapts to the latency it observes: it shrinks as
+ * latency climbs above the long-term average and grows back while latency
+ * stays flat.
+ */
+@Component
+public class AdmissionController {
+
+    private final boolean enabled;
+
+    private final int initialLimit;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final Map<Long, AdaptiveLimit> limits = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdmissionController(@Value("${deal.admission.enabled:true}") boolean enabled,
+                               @Value("${deal.admission.initial-limit:20}") int initialLimit,
+                               @Value("${deal.admission.min-limit:2}") int minLimit,
+                               @Value("${deal.admission.max-limit:200}") int maxLimit) {
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /** Runs the purchase work if the deal has room, recording its latency for the limit. */
+    public <T> T admit(Long dealId, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        AdaptiveLimit limit = limits.computeIfAbsent(dealId, id -> new AdaptiveLimit(initialLimit, minLimit, maxLimit));
+        if (!limit.tryAcquire()) {
+            throw new AdmissionRejectedException(dealId, limit.retryAfterSeconds());
+        }
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            limit.release(System.nanoTime() - start);
+        }
+    }
+
+    /** Drops the deal's limit once it can no longer be bought; in-flight work still releases its own. */
+    public void forget(Long dealId) {
+        limits.remove(dealId);
+    }
+
+    public int limit(Long dealId) {
+        AdaptiveLimit limit = limits.get(dealId);
+        return limit == null ? initialLimit : limit.limit();
+    }
+
+    static final class AdaptiveLimit {
+
+        private static final double LONG_RTT_WEIGHT = 0.05;
+
+        private static final double SMOOTHING = 0.2;
+
+        private final int minLimit;
+
+        private final int maxLimit;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        // Latency samples not yet folded into the limit
+        private final LongAdder pendingRttNanos = new LongAdder();
+
+        private final LongAdder pendingSamples = new LongAdder();
+
+        private final ReentrantLock updating = new ReentrantLock();
+
+        private volatile double limit;
+
+        private volatile double longRttNanos;
+
+        AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+            this.limit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+        }
+
+        boolean tryAcquire() {
+            int current;
+            do {
+                current = inFlight.get();
+                if (current >= (int) limit) {
+                    return false;
+                }
+            } while (!inFlight.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release(long rttNanos) {
+            inFlight.decrementAndGet();
+            pendingRttNanos.add(rttNanos);
+            pendingSamples.increment();
+            // Whoever holds the lock folds in every pending sample; the rest never wait for it
+            if (updating.tryLock()) {
+                try {
+                    long samples = pendingSamples.sumThenReset();
+                    if (samples > 0) {
+                        update(Math.max(1, pendingRttNanos.sumThenReset() / samples));
+                    }
+                } finally {
+                    updating.unlock();
+                }
+            }
+        }
+
+        int limit() {
+            return (int) limit;
+        }
+
+        long retryAfterSeconds() {
+            // Roughly how long the requests ahead need to drain, never less than a second
+            double drainNanos = longRttNanos * inFlight.get() / Math.max(1, limit);
+            return Math.max(1, (long) Math.ceil(drainNanos / TimeUnit.SECONDS.toNanos(1)));
+        }
+
+        private void update(long rttNanos) {
+            if (longRttNanos == 0) {
+                longRttNanos = rttNanos;
+            } else {
+                longRttNanos += (rttNanos - longRttNanos) * LONG_RTT_WEIGHT;
+            }
+            // Below 1 when the latest sample is slower than usual; headroom of sqrt(limit) lets it grow
+            double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+            if (gradient >= 1.0 && inFlight.get() < limit / 2) {
+                // Not using the current limit, so there is nothing to learn about a bigger one
+                return;
+            }
+            double target = limit * gradient + Math.sqrt(limit);
+            double next = limit * (1 - SMOOTHING) + target * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, next));
+        }
+    }
+}
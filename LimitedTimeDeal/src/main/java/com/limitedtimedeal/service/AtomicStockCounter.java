@@ -0,0 +1,38 @@
+package com.limitedtimedeal.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single CAS-decremented counter; the default for deals that are not expected
+ * to be contended by many cores at once.
+ */
+public class AtomicStockCounter implements StockCounter {
+
+    private final AtomicLong units;
+
+    public AtomicStockCounter(long units) {
+        this.units = new AtomicLong(units);
+    }
+
+    @Override
+    public boolean tryAcquire(long buyerHash) {
+        long current;
+        do {
+            current = units.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!units.compareAndSet(current, current - 1));
+        return true;
+    }
+
+    @Override
+    public void release(long buyerHash) {
+        units.incrementAndGet();
+    }
+
+    @Override
+    public long remaining() {
+        return units.get();
+    }
+}
@@ -0,0 +1,122 @@
+package com.limitedtimedeal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.limitedtimedeal.dto.ProductView;
+import com.limitedtimedeal.exceptions.DealNotFoundException;
+import com.limitedtimedeal.model.Deal;
+import com.limitedtimedeal.model.Product;
+import com.limitedtimedeal.repository.DealRepository;
+import com.limitedtimedeal.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+/**
+ * Bounded read-through cache in front of {@link ProductRepository} and
+ * {@link DealRepository}. Products never change once created; deals are
+ * invalidated explicitly whenever they are deactivated. Cached deals are
+ * detached entities and must not be modified.
+ * <p>
+ * Because products are immutable, their JSON body is serialized once and
+ * cached next to them, so a purchase response costs a cache lookup and a copy
+ * of a few dozen bytes however many buyers the deal has.
+ */
+@Component
+public class CatalogCache {
+
+    private final ProductRepository productRepository;
+
+    private final DealRepository dealRepository;
+
+    private final Cache<Long, Product> products;
+
+    private final Cache<Long, byte[]> productJson;
+
+    private final Cache<Long, Deal> deals;
+
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public CatalogCache(ProductRepository productRepository, DealRepository dealRepository, MeterRegistry registry,
+                        ObjectMapper objectMapper,
+                        @Value("${deal.cache.product.max-size:10000}") long productMaxSize,
+                        @Value("${deal.cache.product.ttl:PT1H}") Duration productTtl,
+                        @Value("${deal.cache.deal.max-size:10000}") long dealMaxSize,
+                        @Value("${deal.cache.deal.ttl:PT1M}") Duration dealTtl) {
+        this.productRepository = productRepository;
+        this.dealRepository = dealRepository;
+        this.objectMapper = objectMapper;
+        this.products = Caffeine.newBuilder()
+                .maximumSize(productMaxSize)
+                .expireAfterWrite(productTtl)
+                .recordStats()
+                .build();
+        this.productJson = Caffeine.newBuilder()
+                .maximumSize(productMaxSize)
+                .expireAfterWrite(productTtl)
+                .build();
+        this.deals = Caffeine.newBuilder()
+                .maximumSize(dealMaxSize)
+                .expireAfterWrite(dealTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, products, "products");
+        CaffeineCacheMetrics.monitor(registry, deals, "deals");
+    }
+
+    public Product getProduct(Long productId) {
+        Product product = products.get(productId, id -> productRepository.findById(id).orElse(null));
+        if (product == null) {
+            throw new DealNotFoundException(productId, "Product");
+        }
+        return product;
+    }
+
+    /** The {@link ProductView} JSON of the product; callers must not modify the returned array. */
+    public byte[] productJson(Product product) {
+        return productJson.get(product.getId(), id -> {
+            try {
+                return objectMapper.writeValueAsBytes(ProductView.from(product));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public Deal getDeal(Long dealId) {
+        Deal deal = deals.get(dealId, id -> dealRepository.findById(id).orElse(null));
+        if (deal == null) {
+            throw new DealNotFoundException(dealId, "Deal");
+        }
+        return deal;
+    }
+
+    public void put(Product product) {
+        products.put(product.getId(), product);
+    }
+
+    public void put(Deal deal) {
+        deals.put(deal.getId(), deal);
+    }
+
+    public void invalidateDeal(Long dealId) {
+        deals.invalidate(dealId);
+    }
+
+    public CacheStats productStats() {
+        return products.stats();
+    }
+
+    public CacheStats dealStats() {
+        return deals.stats();
+    }
+}
@@ -0,0 +1,511 @@
+package com.limitedtimedeal.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable, append-only log of claims in memory-mapped segment files, used as
+ * the system of record for purchases when {@code deal.store.mode=log}.
+ * <p>
+ * Appends are written into the mapped segment and then wait for a group
+ * commit: one flusher thread forces everything written since its last pass
+ * every {@code fsync-interval-ms}, so a burst of buyers shares one fsync. The
+ * flusher only notes the written range under the write lock and forces it after
+ * releasing it, and it maps the next segment ahead of time, so appenders never
+ * wait on the disk.
+ * <p>
+ * Periodic snapshots compact the previous snapshot and the forced records after
+ * it into one file, together with the log position they cover; recovery loads
+ * the latest snapshot and replays only the segments after it. A snapshot holds
+ * only claims that were durably appended, dropping deals no longer retained.
+ * <p>
+ * Record layout (32 bytes): magic, CRC32C of the payload, dealId, userId,
+ * epoch millis. Recovery stops at the first record that fails either check and
+ * zeroes the rest of that segment, so records past a torn one never come back.
+ * Buyers wait on locks rather than monitors, which would pin virtual threads.
+ */
+@Component
+public class ClaimLog {
+
+    /** Receives recovered claims. */
+    public interface ClaimConsumer {
+        void accept(long dealId, long userId);
+    }
+
+    static final int RECORD_SIZE = 32;
+
+    private static final int RECORD_MAGIC = 0x434C4D31;
+
+    private static final long SNAPSHOT_MAGIC = 0x434C4D534E415031L;
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private static final Logger log = LoggerFactory.getLogger(ClaimLog.class);
+
+    private final boolean enabled;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final long fsyncIntervalMillis;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Serialises forcing, so ranges become durable in append order
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    private final ReentrantLock durableLock = new ReentrantLock();
+
+    private final Condition forced = durableLock.newCondition();
+
+    private final CRC32C crc = new CRC32C();
+
+    private LongPredicate retained;
+
+    private MappedByteBuffer segment;
+
+    // Mapped by the flusher once the current segment is half full
+    private MappedByteBuffer nextSegment;
+
+    private int segmentIndex;
+
+    private int position;
+
+    private int forcedPosition;
+
+    // Written ranges not yet handed to the flusher, including tails of rolled segments
+    private List<Unforced> unforced = new ArrayList<>();
+
+    private long appended;
+
+    private boolean open;
+
+    private volatile long durable;
+
+    // Log position up to which every record is forced; guarded by durableLock
+    private int durableSegment;
+
+    private int durablePosition;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    @Autowired
+    public ClaimLog(@Value("${deal.store.mode:database}") String mode,
+                    @Value("${deal.store.dir:./data}") Path directory,
+                    @Value("${deal.store.segment-size-mb:64}") int segmentSizeMb,
+                    @Value("${deal.store.fsync-interval-ms:2}") long fsyncIntervalMillis) {
+        this.enabled = "log".equalsIgnoreCase(mode);
+        this.directory = directory.resolve("claims");
+        // Whole records only, so a record never straddles two segments
+        this.segmentSize = (segmentSizeMb * 1024 * 1024) / RECORD_SIZE * RECORD_SIZE;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Loads the latest snapshot, replays the log after it into {@code replay} and
+     * opens the log for appends. Snapshots keep only the claims of deals that
+     * {@code retained} accepts.
+     */
+    public void recover(ClaimConsumer replay, LongPredicate retained) {
+        this.retained = retained;
+        try {
+            Files.createDirectories(directory);
+            int[] start = readSnapshot(replay);
+            List<Integer> segments = segmentIndexes();
+            int lastIndex = start[0];
+            int lastEnd = start[1];
+            for (int index : segments) {
+                if (index < start[0]) {
+                    Files.delete(segmentPath(index));
+                    continue;
+                }
+                lastIndex = index;
+                lastEnd = replaySegment(index, index == start[0] ? start[1] : 0, segmentSize, replay);
+            }
+            segment = mapSegment(lastIndex, lastEnd, false);
+            segmentIndex = lastIndex;
+            position = lastEnd;
+            forcedPosition = lastEnd;
+            durableSegment = lastIndex;
+            durablePosition = lastEnd;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover the claim log in " + directory, e);
+        }
+        open = true;
+        running = true;
+        flusher = new Thread(this::flushLoop, "claim-log-fsync");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /** Appends a claim and returns once it is on disk. */
+    public void append(long dealId, long userId) {
+        awaitDurable(write(dealId, userId));
+    }
+
+    /** Appends a claim without waiting for it to be forced; see {@link #awaitDurable}. */
+    public long write(long dealId, long userId) {
+        writeLock.lock();
+        try {
+            if (!open) {
+                throw new IllegalStateException("Claim log is not open");
+            }
+            if (position + RECORD_SIZE > segmentSize) {
+                roll();
+            }
+            int at = position;
+            segment.putLong(at + 8, dealId);
+            segment.putLong(at + 16, userId);
+            segment.putLong(at + 24, System.currentTimeMillis());
+            crc.reset();
+            crc.update(segment.slice(at + 8, RECORD_SIZE - 8));
+            segment.putInt(at + 4, (int) crc.getValue());
+            segment.putInt(at, RECORD_MAGIC);
+            position = at + RECORD_SIZE;
+            return ++appended;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void awaitDurable(long sequence) {
+        if (durable >= sequence) {
+            return;
+        }
+        durableLock.lock();
+        try {
+            while (durable < sequence) {
+                if (!running) {
+                    throw new IllegalStateException("Claim log closed before the claim was forced");
+                }
+                forced.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the claim log", e);
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the previous snapshot plus the forced records after it as a new
+     * snapshot and drops the segments it makes redundant. Only records that were
+     * forced, and so acknowledged to their buyers, are included.
+     */
+    @Scheduled(fixedDelayString = "${deal.store.snapshot-interval-ms:300000}",
+            initialDelayString = "${deal.store.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (!running) {
+            return;
+        }
+        int snapshotSegment;
+        int snapshotPosition;
+        durableLock.lock();
+        try {
+            snapshotSegment = durableSegment;
+            snapshotPosition = durablePosition;
+        } finally {
+            durableLock.unlock();
+        }
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            long[] pairs = {0};
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                         Channels.newOutputStream(channel), 1 << 16))) {
+                out.writeLong(SNAPSHOT_MAGIC);
+                out.writeInt(snapshotSegment);
+                out.writeInt(snapshotPosition);
+                ClaimConsumer keep = (dealId, userId) -> {
+                    if (!retained.test(dealId)) {
+                        return;
+                    }
+                    try {
+                        out.writeLong(dealId);
+                        out.writeLong(userId);
+                        pairs[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+                int[] previous = readSnapshot(keep);
+                for (int index : segmentIndexes()) {
+                    if (index >= previous[0] && index <= snapshotSegment) {
+                        replaySegment(index, index == previous[0] ? previous[1] : 0,
+                                index == snapshotSegment ? snapshotPosition : segmentSize, keep);
+                    }
+                }
+                out.writeLong(SNAPSHOT_MAGIC);
+                out.writeLong(pairs[0]);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (int index : segmentIndexes()) {
+                if (index < snapshotSegment) {
+                    Files.delete(segmentPath(index));
+                }
+            }
+            log.info("Claim log snapshot of {} claims at segment {} offset {}", pairs[0], snapshotSegment,
+                    snapshotPosition);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not write claim log snapshot", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        flusher.interrupt();
+        flusher.join();
+        writeLock.lock();
+        try {
+            open = false;
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            forceWritten();
+        } finally {
+            running = false;
+        }
+        durableLock.lock();
+        try {
+            forced.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(fsyncIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                forceWritten();
+                prepareNextSegment();
+            } catch (RuntimeException e) {
+                log.error("Could not force the claim log", e);
+            }
+        }
+    }
+
+    private void forceWritten() {
+        forceLock.lock();
+        try {
+            List<Unforced> ranges;
+            long sequence;
+            int forcedSegment;
+            int forcedTo;
+            writeLock.lock();
+            try {
+                if (durable == appended) {
+                    return;
+                }
+                unforced.add(new Unforced(segment, forcedPosition, position));
+                forcedPosition = position;
+                ranges = unforced;
+                unforced = new ArrayList<>();
+                sequence = appended;
+                forcedSegment = segmentIndex;
+                forcedTo = position;
+            } finally {
+                writeLock.unlock();
+            }
+            try {
+                for (Unforced range : ranges) {
+                    range.buffer().force(range.from(), range.to() - range.from());
+                }
+            } catch (RuntimeException e) {
+                // Hand the ranges back so the next pass retries them
+                writeLock.lock();
+                try {
+                    ranges.addAll(unforced);
+                    unforced = ranges;
+                } finally {
+                    writeLock.unlock();
+                }
+                throw e;
+            }
+            durableLock.lock();
+            try {
+                durable = sequence;
+                durableSegment = forcedSegment;
+                durablePosition = forcedTo;
+                forced.signalAll();
+            } finally {
+                durableLock.unlock();
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    // Caller holds writeLock; the tail of the full segment is forced by the next flusher pass
+    private void roll() {
+        unforced.add(new Unforced(segment, forcedPosition, position));
+        MappedByteBuffer next = nextSegment;
+        nextSegment = null;
+        if (next == null) {
+            // The flusher has not mapped it yet
+            try {
+                next = mapSegment(segmentIndex + 1, 0, false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open claim log segment " + (segmentIndex + 1), e);
+            }
+        }
+        segment = next;
+        segmentIndex++;
+        position = 0;
+        forcedPosition = 0;
+    }
+
+    private void prepareNextSegment() {
+        int next;
+        writeLock.lock();
+        try {
+            if (nextSegment != null || position < segmentSize / 2) {
+                return;
+            }
+            next = segmentIndex + 1;
+        } finally {
+            writeLock.unlock();
+        }
+        MappedByteBuffer mapped;
+        try {
+            mapped = mapSegment(next, 0, true);
+        } catch (FileAlreadyExistsException e) {
+            // A roll got there first
+            return;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open claim log segment " + next, e);
+        }
+        writeLock.lock();
+        try {
+            if (segmentIndex + 1 == next) {
+                nextSegment = mapped;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private MappedByteBuffer mapSegment(int index, int start, boolean createNew) throws IOException {
+        MappedByteBuffer mapped;
+        long existing;
+        try (FileChannel channel = FileChannel.open(segmentPath(index),
+                createNew ? StandardOpenOption.CREATE_NEW : StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            existing = channel.size();
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        // A crash may leave whole records after a torn one; clear the entire tail so none is ever replayed
+        byte[] zeros = new byte[1 << 16];
+        for (int at = start; at < Math.min(existing, segmentSize); at += zeros.length) {
+            mapped.put(at, zeros, 0, Math.min(zeros.length, segmentSize - at));
+        }
+        mapped.force();
+        return mapped;
+    }
+
+    private int replaySegment(int index, int start, int end, ClaimConsumer replay) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(channel.size(), segmentSize));
+            CRC32C check = new CRC32C();
+            int at = start;
+            int limit = Math.min(buffer.limit(), end);
+            while (at + RECORD_SIZE <= limit && buffer.getInt(at) == RECORD_MAGIC) {
+                check.reset();
+                check.update(buffer.slice(at + 8, RECORD_SIZE - 8));
+                if ((int) check.getValue() != buffer.getInt(at + 4)) {
+                    break;
+                }
+                replay.accept(buffer.getLong(at + 8), buffer.getLong(at + 16));
+                at += RECORD_SIZE;
+            }
+            return at;
+        }
+    }
+
+    private int[] readSnapshot(ClaimConsumer replay) throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return new int[]{0, 0};
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readLong() != SNAPSHOT_MAGIC) {
+                throw new IOException("Corrupt claim log snapshot " + file);
+            }
+            int snapshotSegment = in.readInt();
+            int snapshotPosition = in.readInt();
+            long pairs = (Files.size(file) - 16 - 16) / 16;
+            for (long i = 0; i < pairs; i++) {
+                replay.accept(in.readLong(), in.readLong());
+            }
+            if (in.readLong() != SNAPSHOT_MAGIC || in.readLong() != pairs) {
+                throw new IOException("Truncated claim log snapshot " + file);
+            }
+            return new int[]{snapshotSegment, snapshotPosition};
+        }
+    }
+
+    private List<Integer> segmentIndexes() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("claims-") && name.endsWith(".log"))
+                    .map(name -> Integer.parseInt(name.substring(7, name.length() - 4)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("claims-%06d.log", index));
+    }
+
+    private record Unforced(MappedByteBuffer buffer, int from, int to) {
+    }
+}
@@ -0,0 +1,368 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.model.DealClaim;
+import com.limitedtimedeal.repository.DealClaimRepository;
+import com.limitedtimedeal.repository.DealRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind pipeline for confirmed purchases. Claims are queued in memory
+ * and written to deal_users together with the matching {@code Deal.sold}
+ * increments in one transaction per batch, flushed when the batch is full or
+ * the flush interval has passed. A full queue pushes back on buyers and the
+ * queue is drained completely on shutdown.
+ * <p>
+ * Claims that still cannot be written once {@code shutdown-timeout-ms} has passed
+ * are appended to {@code unwritten-claims.csv} under {@code deal.store.dir}, and
+ * shutdown fails. The next start writes them before the first purchase is taken.
+ * <p>
+ * A claim whose (deal, user) row turns out to exist already did not sell a
+ * unit, so its reserved unit is handed back to the reservation engine and the
+ * claim is counted in {@code deal.claims.duplicates}. The buyer stays in the
+ * dedup filter, since the stored row makes them a buyer of the deal.
+ */
+@Component
+public class ClaimWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(ClaimWriteBehind.class);
+
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    private final DealClaimRepository dealClaimRepository;
+
+    private final DealRepository dealRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final InventoryReservationEngine inventoryEngine;
+
+    private final PurchaseDedupFilter dedupFilter;
+
+    private final Counter duplicates;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final long flushIntervalMillis;
+
+    private final long offerTimeoutMillis;
+
+    private final long shutdownTimeoutNanos;
+
+    private final Path spillFile;
+
+    private final BlockingQueue<PendingClaim> queue;
+
+    private volatile boolean running;
+
+    private volatile long shutdownDeadline;
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    // Claims written or spilled; only the writer thread updates it
+    private volatile long written;
+
+    // Claims saved to the spill file, and claims that could not even be saved there
+    private long spilled;
+
+    private long lost;
+
+    private Thread writer;
+
+    @Autowired
+    public ClaimWriteBehind(DealClaimRepository dealClaimRepository, DealRepository dealRepository,
+                            TransactionTemplate transactionTemplate, InventoryReservationEngine inventoryEngine,
+                            PurchaseDedupFilter dedupFilter, MeterRegistry registry,
+                            @Value("${deal.claims.write-behind.enabled:true}") boolean enabled,
+                            @Value("${deal.claims.write-behind.capacity:100000}") int capacity,
+                            @Value("${deal.claims.write-behind.batch-size:500}") int batchSize,
+                            @Value("${deal.claims.write-behind.flush-interval-ms:50}") long flushIntervalMillis,
+                            @Value("${deal.claims.write-behind.offer-timeout-ms:100}") long offerTimeoutMillis,
+                            @Value("${deal.claims.write-behind.shutdown-timeout-ms:30000}") long shutdownTimeoutMillis,
+                            @Value("${deal.store.dir:./data}") Path storeDir) {
+        this.dealClaimRepository = dealClaimRepository;
+        this.dealRepository = dealRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.inventoryEngine = inventoryEngine;
+        this.dedupFilter = dedupFilter;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.shutdownTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        this.spillFile = storeDir.resolve("unwritten-claims.csv");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("deal.claims.pending", queue, BlockingQueue::size)
+                .description("Confirmed purchases waiting to be written")
+                .register(registry);
+        this.duplicates = Counter.builder("deal.claims.duplicates")
+                .description("Queued purchases whose claim was already stored; their unit is returned to stock")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a confirmed purchase. Waits briefly when the queue is full and
+     * returns false if no room became available.
+     */
+    public boolean submit(Long dealId, Long userId) {
+        if (!running) {
+            return false;
+        }
+        try {
+            if (!queue.offer(new PendingClaim(dealId, userId), offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            submitted.incrementAndGet();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Like {@link #submit} but never waits, for callers that must not block. */
+    public boolean trySubmit(Long dealId, Long userId) {
+        if (!running || !queue.offer(new PendingClaim(dealId, userId))) {
+            return false;
+        }
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Waits until every claim submitted before the call has been written; false if
+     * that did not happen within the timeout.
+     */
+    public boolean awaitWritten(long timeoutMillis) {
+        long target = submitted.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (written < target) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        writeSpilled();
+        running = true;
+        writer = new Thread(this::run, "claim-write-behind");
+        writer.start();
+    }
+
+    /**
+     * Stops accepting claims and waits until everything queued has been written
+     * or spilled; fails if anything had to be spilled.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        shutdownDeadline = System.nanoTime() + shutdownTimeoutNanos;
+        running = false;
+        writer.join();
+        if (lost > 0) {
+            throw new IllegalStateException(lost + " acknowledged claims could not be written to the database or to "
+                    + spillFile + "; they are listed in the error log");
+        }
+        if (spilled > 0) {
+            throw new IllegalStateException(spilled + " acknowledged claims could not be written to the database and "
+                    + "were saved to " + spillFile + "; they are written on the next start");
+        }
+    }
+
+    private void run() {
+        List<PendingClaim> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            collect(batch);
+            if (!batch.isEmpty()) {
+                writeWithRetry(batch);
+                written += batch.size();
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<PendingClaim> batch) {
+        try {
+            PendingClaim first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+            while (batch.size() < batchSize) {
+                if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                PendingClaim next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void writeWithRetry(List<PendingClaim> batch) {
+        while (spilled == 0 && lost == 0) {
+            try {
+                write(batch, true);
+                return;
+            } catch (RuntimeException e) {
+                if (!running && System.nanoTime() - shutdownDeadline > 0) {
+                    log.error("Could not write {} claims before the shutdown timeout", batch.size(), e);
+                    break;
+                }
+                log.warn("Could not write {} claims, retrying", batch.size(), e);
+                sleepQuietly(RETRY_BACKOFF_MILLIS);
+            }
+        }
+        // Once one batch is spilled the database is given up on, so later ones keep their order behind it
+        spill(batch);
+    }
+
+    private void write(List<PendingClaim> batch, boolean releaseDuplicates) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+        } catch (DataIntegrityViolationException e) {
+            // Some claim is already stored (e.g. written by another instance); fall back to one per transaction
+            for (PendingClaim claim : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(claim)));
+                } catch (DataIntegrityViolationException duplicate) {
+                    duplicates.increment();
+                    if (!releaseDuplicates) {
+                        log.warn("Duplicate claim of deal {} by user {}", claim.dealId(), claim.userId());
+                        continue;
+                    }
+                    inventoryEngine.release(claim.dealId(), claim.userId());
+                    log.warn("Duplicate claim of deal {} by user {}, returned its unit to stock", claim.dealId(),
+                            claim.userId());
+                }
+            }
+        }
+    }
+
+    private void spill(List<PendingClaim> batch) {
+        StringBuilder lines = new StringBuilder();
+        for (PendingClaim claim : batch) {
+            lines.append(claim.dealId()).append(',').append(claim.userId()).append('\n');
+        }
+        try {
+            Files.createDirectories(spillFile.getParent());
+            try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.US_ASCII));
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            spilled += batch.size();
+        } catch (IOException e) {
+            lost += batch.size();
+            log.error("Could not save {} unwritten claims to {}, deal,user pairs:\n{}", batch.size(), spillFile,
+                    lines, e);
+        }
+    }
+
+    // Runs before the writer starts and before stock is loaded, so the counters include these claims
+    private void writeSpilled() {
+        if (!Files.exists(spillFile)) {
+            return;
+        }
+        List<PendingClaim> claims;
+        try {
+            claims = Files.readAllLines(spillFile, StandardCharsets.US_ASCII).stream()
+                    .filter(line -> !line.isBlank())
+                    .map(line -> line.split(","))
+                    .map(parts -> new PendingClaim(Long.parseLong(parts[0]), Long.parseLong(parts[1])))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read unwritten claims from " + spillFile, e);
+        }
+        for (int from = 0; from < claims.size(); from += batchSize) {
+            write(claims.subList(from, Math.min(claims.size(), from + batchSize)), false);
+        }
+        claims.forEach(claim -> dedupFilter.add(claim.dealId(), claim.userId()));
+        try {
+            Files.delete(spillFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Wrote the claims in " + spillFile + " but could not delete it", e);
+        }
+        log.info("Wrote {} claims saved by the previous shutdown", claims.size());
+    }
+
+    private void insert(List<PendingClaim> claims) {
+        List<DealClaim> entities = new ArrayList<>(claims.size());
+        for (PendingClaim claim : claims) {
+            entities.add(new DealClaim(claim.dealId(), claim.userId()));
+        }
+        dealClaimRepository.saveAll(entities);
+        dealClaimRepository.flush();
+        Map<Long, Long> soldByDeal = claims.stream()
+                .collect(Collectors.groupingBy(PendingClaim::dealId, Collectors.counting()));
+        soldByDeal.forEach(dealRepository::addSold);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PendingClaim(Long dealId, Long userId) {
+    }
+}
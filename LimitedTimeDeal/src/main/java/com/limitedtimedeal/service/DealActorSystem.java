@@ -0,0 +1,199 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.exceptions.DealExpiredException;
+import com.limitedtimedeal.exceptions.DealSoldOutException;
+import com.limitedtimedeal.exceptions.DuplicatePurchaseException;
+import com.limitedtimedeal.exceptions.PurchaseBacklogFullException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer purchase processing for {@code deal.purchase.mode=actor}.
+ * <p>
+ * Every deal is owned by one of {@code deal.actor.shards} shard threads, chosen
+ * by deal id. A shard drains its lock-free mailbox and applies each purchase
+ * on its own: open check, repeat-buyer check, stock claim, then hands the claim
+ * to {@link ClaimWriteBehind} for batched persistence. Since only the owning
+ * shard ever claims a deal's stock, those steps never contend, and distinct hot
+ * deals spread across cores. Nothing on a shard thread blocks on the database
+ * after a deal's stock is loaded: a claim the write-behind queue cannot take is
+ * returned unqueued and persisted by the caller.
+ */
+@Component
+public class DealActorSystem {
+
+    /**
+     * Outcome of a claim accepted by the owning shard. A claim written to the log is
+     * never queued here; the caller queues it once it is durable.
+     */
+    public record Claim(long logSequence, boolean queued) {
+    }
+
+    private final InventoryReservationEngine inventoryEngine;
+
+    private final PurchaseDedupFilter dedupFilter;
+
+    private final ClaimWriteBehind claimWriteBehind;
+
+    private final ClaimLog claimLog;
+
+    private final boolean enabled;
+
+    private final Shard[] shards;
+
+    @Autowired
+    public DealActorSystem(InventoryReservationEngine inventoryEngine, PurchaseDedupFilter dedupFilter,
+                           ClaimWriteBehind claimWriteBehind, ClaimLog claimLog, MeterRegistry registry,
+                           @Value("${deal.purchase.mode:memory}") PurchaseMode purchaseMode,
+                           @Value("${deal.actor.shards:0}") int shardCount,
+                           @Value("${deal.actor.mailbox-capacity:10000}") int mailboxCapacity) {
+        this.inventoryEngine = inventoryEngine;
+        this.dedupFilter = dedupFilter;
+        this.claimWriteBehind = claimWriteBehind;
+        this.claimLog = claimLog;
+        this.enabled = purchaseMode == PurchaseMode.ACTOR;
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[enabled ? count : 0];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard("deal-actor-" + i, mailboxCapacity);
+        }
+        Gauge.builder("deal.actor.mailbox.size", this, DealActorSystem::queued)
+                .description("Purchases waiting in deal actor mailboxes")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * Sends the purchase to the shard that owns the deal. The future fails with the
+     * usual purchase exceptions when the unit cannot be claimed.
+     */
+    public CompletableFuture<Claim> claim(Long dealId, Long userId) {
+        if (!enabled) {
+            throw new IllegalStateException("deal.purchase.mode is not actor");
+        }
+        Purchase purchase = new Purchase(dealId, userId, new CompletableFuture<>());
+        if (!shards[Math.floorMod(dealId.hashCode(), shards.length)].offer(purchase)) {
+            return CompletableFuture.failedFuture(new PurchaseBacklogFullException(dealId));
+        }
+        return purchase.result();
+    }
+
+    public int queued() {
+        return Arrays.stream(shards).mapToInt(shard -> shard.size.get()).sum();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            shard.thread.join();
+        }
+    }
+
+    // Runs on the owning shard thread only
+    private Claim apply(Purchase purchase) {
+        Long dealId = purchase.dealId();
+        Long userId = purchase.userId();
+        if (!inventoryEngine.isOpen(dealId)) {
+            throw new DealExpiredException(dealId);
+        }
+        if (dedupFilter.contains(dealId, userId)) {
+            throw new DuplicatePurchaseException(userId, dealId);
+        }
+        if (!inventoryEngine.tryReserve(dealId, userId)) {
+            throw new DealSoldOutException(dealId);
+        }
+        dedupFilter.add(dealId, userId);
+        try {
+            if (claimLog.isEnabled()) {
+                // The caller queues the claim once the log has forced it
+                return new Claim(claimLog.write(dealId, userId), false);
+            }
+            return new Claim(0, claimWriteBehind.trySubmit(dealId, userId));
+        } catch (RuntimeException e) {
+            dedupFilter.remove(dealId, userId);
+            inventoryEngine.release(dealId, userId);
+            throw e;
+        }
+    }
+
+    private record Purchase(Long dealId, Long userId, CompletableFuture<Claim> result) {
+    }
+
+    private final class Shard implements Runnable {
+
+        private final Queue<Purchase> mailbox = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger size = new AtomicInteger();
+
+        private final int capacity;
+
+        private final Thread thread;
+
+        private volatile boolean running = true;
+
+        private volatile boolean idle;
+
+        Shard(String name, int capacity) {
+            this.capacity = capacity;
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        boolean offer(Purchase purchase) {
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                return false;
+            }
+            mailbox.offer(purchase);
+            if (idle) {
+                LockSupport.unpark(thread);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            while (running || !mailbox.isEmpty()) {
+                Purchase purchase = mailbox.poll();
+                if (purchase == null) {
+                    idle = true;
+                    // Re-check after publishing idle: an offer either sees idle and unparks us,
+                    // or lands before this check, so parking without a timeout never misses one
+                    if (mailbox.isEmpty() && running) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                    continue;
+                }
+                size.decrementAndGet();
+                try {
+                    purchase.result().complete(apply(purchase));
+                } catch (RuntimeException e) {
+                    purchase.result().completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
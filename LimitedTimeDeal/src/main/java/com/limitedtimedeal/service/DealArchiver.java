@@ -0,0 +1,152 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.cluster.ClusterCoordinator;
+import com.limitedtimedeal.repository.ArchivedDealRepository;
+import com.limitedtimedeal.repository.DealClaimRepository;
+import com.limitedtimedeal.repository.DealRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves deals that ended more than {@code deal.archive.retention} ago, with their
+ * deal_users rows, from the hot tables into archived_deal and archived_deal_users,
+ * so the hot tables, their indexes and the in-memory buyer sets only hold live
+ * and recently ended deals.
+ * <p>
+ * Only deals the expiry sweep has already deactivated are picked up. Each batch
+ * copies and deletes in one transaction, so a deal is always in exactly one of
+ * the two places, and the archiver sleeps {@code batch-pause-ms} between batches
+ * to leave the database to purchases. In a cluster only the node chosen by
+ * {@link ClusterCoordinator#runsMaintenance()} archives.
+ */
+@Component
+public class DealArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(DealArchiver.class);
+
+    private final DealRepository dealRepository;
+
+    private final DealClaimRepository dealClaimRepository;
+
+    private final ArchivedDealRepository archivedDealRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final InventoryReservationEngine inventoryEngine;
+
+    private final PurchaseDedupFilter dedupFilter;
+
+    private final CatalogCache catalogCache;
+
+    private final AdmissionController admissionController;
+
+    private final ClusterCoordinator clusterCoordinator;
+
+    private final DealMetrics dealMetrics;
+
+    private final boolean enabled;
+
+    private final Duration retention;
+
+    private final int batchSize;
+
+    private final long batchPauseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public DealArchiver(DealRepository dealRepository, DealClaimRepository dealClaimRepository,
+                        ArchivedDealRepository archivedDealRepository, TransactionTemplate transactionTemplate,
+                        InventoryReservationEngine inventoryEngine, PurchaseDedupFilter dedupFilter,
+                        CatalogCache catalogCache, AdmissionController admissionController,
+                        ClusterCoordinator clusterCoordinator, DealMetrics dealMetrics,
+                        @Value("${deal.archive.enabled:true}") boolean enabled,
+                        @Value("${deal.archive.retention:P7D}") Duration retention,
+                        @Value("${deal.archive.batch-size:200}") int batchSize,
+                        @Value("${deal.archive.batch-pause-ms:50}") long batchPauseMillis) {
+        this.dealRepository = dealRepository;
+        this.dealClaimRepository = dealClaimRepository;
+        this.archivedDealRepository = archivedDealRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.inventoryEngine = inventoryEngine;
+        this.dedupFilter = dedupFilter;
+        this.catalogCache = catalogCache;
+        this.admissionController = admissionController;
+        this.clusterCoordinator = clusterCoordinator;
+        this.dealMetrics = dealMetrics;
+        this.enabled = enabled;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.batchPauseMillis = batchPauseMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${deal.archive.interval-ms:600000}",
+            initialDelayString = "${deal.archive.interval-ms:600000}")
+    public void archiveTask() {
+        if (enabled && clusterCoordinator.runsMaintenance()) {
+            archive();
+        }
+    }
+
+    /** Archives every eligible deal, batch by batch; returns how many deals were moved. */
+    public int archive() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now(ZoneId.of("Asia/Kolkata")).minus(retention);
+            int archived = 0;
+            while (true) {
+                long start = System.nanoTime();
+                List<Long> dealIds = dealRepository.findArchivableIds(cutoff, PageRequest.of(0, batchSize));
+                if (dealIds.isEmpty()) {
+                    break;
+                }
+                int[] moved = transactionTemplate.execute(status -> new int[]{
+                        archivedDealRepository.copyDeals(dealIds, LocalDateTime.now(ZoneId.of("Asia/Kolkata"))),
+                        archivedDealRepository.copyClaims(dealIds),
+                        dealClaimRepository.deleteByDealIds(dealIds),
+                        dealRepository.deleteDeals(dealIds)});
+                for (Long dealId : dealIds) {
+                    inventoryEngine.evict(dealId);
+                    admissionController.forget(dealId);
+                    dedupFilter.forget(dealId);
+                    catalogCache.invalidateDeal(dealId);
+                }
+                archived += moved[0];
+                dealMetrics.recordArchiveBatch(moved[0], moved[1], System.nanoTime() - start);
+                log.debug("Archived {} deals and {} claims, {} deals so far", moved[0], moved[1], archived);
+                if (dealIds.size() < batchSize) {
+                    break;
+                }
+                Thread.sleep(batchPauseMillis);
+            }
+            if (archived > 0) {
+                log.info("Archived {} deals that ended before {}", archived, cutoff);
+            }
+            return archived;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (DataAccessException e) {
+            // e.g. another node archived the same batch after a membership change; the next run picks up the rest
+            log.warn("Deal archival stopped", e);
+            return 0;
+        } finally {
+            running.set(false);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.limitedtimedeal.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -7,6 +9,8 @@ import org.springframework.stereotype.Component;
 @Component
 public class DealDeactivationScheduler {
 
+    private static final Logger log = LoggerFactory.getLogger(DealDeactivationScheduler.class);
+
     private final DealService dealService;
 
     @Autowired
@@ -14,9 +18,15 @@ public class DealDeactivationScheduler {
         this.dealService = dealService;
     }
 
+    @Scheduled(fixedRateString = "${deal.expiry.tick-ms:1000}")
+    public void expireDueDealsTask() {
+        dealService.expireDueDeals();
+    }
+
+    // Backstop for deals the expiry wheel does not know about, e.g. ones written by another instance
     @Scheduled(cron = "0 0 * * * *") // Run every hour at the beginning of the hour (00:00)
     public void deactivateExpiredDealsTask() {
         int deactivatedCount = dealService.deactivateExpiredDeals();
-        System.out.println("Deactivated " + deactivatedCount + " expired deals at " + java.time.LocalDateTime.now(java.time.ZoneId.of("Asia/Kolkata")));
+        log.info("Deactivated {} expired deals", deactivatedCount);
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.limitedtimedeal.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel holding the end time of every live deal. Each slot covers
+ * one tick; entries further away than one revolution simply stay in their slot
+ * until their deadline has passed, so registering and expiring a deal is O(1)
+ * regardless of how many deals exist.
+ */
+@Component
+public class DealExpiryWheel {
+
+    public static final ZoneId DEAL_ZONE = ZoneId.of("Asia/Kolkata");
+
+    private static final long TICK_MILLIS = 1000;
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final ArrayDeque<Timeout>[] slots;
+
+    private long lastTick;
+
+    @SuppressWarnings("unchecked")
+    public DealExpiryWheel() {
+        slots = new ArrayDeque[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        lastTick = System.currentTimeMillis() / TICK_MILLIS;
+    }
+
+    public void schedule(Long dealId, LocalDateTime endTime) {
+        schedule(dealId, endTime.atZone(DEAL_ZONE).toInstant().toEpochMilli());
+    }
+
+    public synchronized void schedule(Long dealId, long deadlineMillis) {
+        // Round up so the deadline has passed when its slot is visited; deadlines in an
+        // already processed tick go into the next slot instead
+        long tick = Math.max((deadlineMillis + TICK_MILLIS - 1) / TICK_MILLIS, lastTick + 1);
+        slots[slotOf(tick)].add(new Timeout(dealId, deadlineMillis));
+    }
+
+    /**
+     * Moves the wheel up to {@code nowMillis} and returns the deals whose end time
+     * has passed since the previous call.
+     */
+    public synchronized List<Long> advance(long nowMillis) {
+        long targetTick = nowMillis / TICK_MILLIS;
+        if (targetTick <= lastTick) {
+            return List.of();
+        }
+        Set<Long> expired = new LinkedHashSet<>();
+        long ticks = Math.min(targetTick - lastTick, WHEEL_SIZE);
+        for (long tick = targetTick - ticks + 1; tick <= targetTick; tick++) {
+            Iterator<Timeout> timeouts = slots[slotOf(tick)].iterator();
+            while (timeouts.hasNext()) {
+                Timeout timeout = timeouts.next();
+                if (timeout.deadlineMillis <= nowMillis) {
+                    expired.add(timeout.dealId);
+                    timeouts.remove();
+                }
+            }
+        }
+        lastTick = targetTick;
+        return new ArrayList<>(expired);
+    }
+
+    private static int slotOf(long tick) {
+        return (int) (tick & (WHEEL_SIZE - 1));
+    }
+
+    private record Timeout(Long dealId, long deadlineMillis) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.exceptions.AdmissionRejectedException;
+import com.limitedtimedeal.exceptions.DealExpiredException;
+import com.limitedtimedeal.exceptions.DealNotFoundException;
+import com.limitedtimedeal.exceptions.DealNotStartedException;
+import com.limitedtimedeal.exceptions.DealSoldOutException;
+import com.limitedtimedeal.exceptions.DuplicatePurchaseException;
+import com.limitedtimedeal.exceptions.InvalidDealException;
+import com.limitedtimedeal.exceptions.PurchaseBacklogFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the deal hot paths. Every meter used on the purchase path is
+ * registered up front so recording an outcome is a lookup in an enum map and
+ * a timer update, without allocating.
+ */
+@Component
+public class DealMetrics {
+
+    public enum BuyOutcome {
+        SUCCESS, SOLD_OUT, DUPLICATE, NOT_FOUND, NOT_STARTED, EXPIRED, INVALID, BACKLOG_FULL, THROTTLED, ERROR;
+
+        final String tag = name().toLowerCase();
+    }
+
+    private final MeterRegistry registry;
+
+    private final Map<BuyOutcome, Timer> buyTimers = new EnumMap<>(BuyOutcome.class);
+
+    private final DistributionSummary wheelExpirySize;
+
+    private final DistributionSummary sweepExpirySize;
+
+    private final Timer sweepChunkTimer;
+
+    private final Timer archiveBatchTimer;
+
+    private final Counter archivedDeals;
+
+    private final Counter archivedClaims;
+
+    @Autowired
+    public DealMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (BuyOutcome outcome : BuyOutcome.values()) {
+            buyTimers.put(outcome, Timer.builder("deal.buy")
+                    .description("Purchase attempts by outcome")
+                    .tag("outcome", outcome.tag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        wheelExpirySize = expirySummary("wheel");
+        sweepExpirySize = expirySummary("sweep");
+        sweepChunkTimer = Timer.builder("deal.expiry.sweep.chunk")
+                .description("Time to select and deactivate one chunk of the expiry sweep")
+                .publishPercentileHistogram()
+                .register(registry);
+        archiveBatchTimer = Timer.builder("deal.archive.batch")
+                .description("Time to move one batch of ended deals and their claims to the archive tables")
+                .publishPercentileHistogram()
+                .register(registry);
+        archivedDeals = Counter.builder("deal.archive.deals")
+                .description("Deals moved to the archive")
+                .register(registry);
+        archivedClaims = Counter.builder("deal.archive.claims")
+                .description("Claims moved to the archive")
+                .register(registry);
+    }
+
+    public void recordBuy(BuyOutcome outcome, long startNanos) {
+        buyTimers.get(outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBuyFailure(RuntimeException failure, long startNanos) {
+        recordBuy(outcomeOf(failure), startNanos);
+    }
+
+    public void recordWheelExpiry(int deals) {
+        wheelExpirySize.record(deals);
+    }
+
+    public void recordSweepExpiry(int deals) {
+        sweepExpirySize.record(deals);
+    }
+
+    public void recordSweepChunk(long nanos) {
+        sweepChunkTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registerStockGauge(Long dealId, Supplier<Number> remaining) {
+        Gauge.builder("deal.stock.remaining", remaining)
+                .description("Units of the deal still available on this instance")
+                .tag("dealId", dealId.toString())
+                .register(registry);
+    }
+
+    public void removeStockGauge(Long dealId) {
+        Gauge gauge = registry.find("deal.stock.remaining").tag("dealId", dealId.toString()).gauge();
+        if (gauge != null) {
+            registry.remove(gauge);
+        }
+    }
+
+    public void recordArchiveBatch(int deals, int claims, long nanos) {
+        archiveBatchTimer.record(nanos, TimeUnit.NANOSECONDS);
+        archivedDeals.increment(deals);
+        archivedClaims.increment(claims);
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    private DistributionSummary expirySummary(String source) {
+        return DistributionSummary.builder("deal.expiry.deactivated")
+                .description("Deals deactivated per expiry run")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    private static BuyOutcome outcomeOf(RuntimeException failure) {
+        if (failure instanceof DealSoldOutException) {
+            return BuyOutcome.SOLD_OUT;
+        }
+        if (failure instanceof DuplicatePurchaseException) {
+            return BuyOutcome.DUPLICATE;
+        }
+        if (failure instanceof DealNotFoundException) {
+            return BuyOutcome.NOT_FOUND;
+        }
+        if (failure instanceof DealNotStartedException) {
+            return BuyOutcome.NOT_STARTED;
+        }
+        if (failure instanceof DealExpiredException) {
+            return BuyOutcome.EXPIRED;
+        }
+        if (failure instanceof InvalidDealException) {
+            return BuyOutcome.INVALID;
+        }
+        if (failure instanceof PurchaseBacklogFullException) {
+            return BuyOutcome.BACKLOG_FULL;
+        }
+        if (failure instanceof AdmissionRejectedException) {
+            return BuyOutcome.THROTTLED;
+        }
+        return BuyOutcome.ERROR;
+    }
+}
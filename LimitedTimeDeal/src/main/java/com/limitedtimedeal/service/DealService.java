@@ -1,17 +1,47 @@
 package com.limitedtimedeal.service;
 
+import com.limitedtimedeal.dto.BulkDealResult;
 import com.limitedtimedeal.dto.DealDto;
+import com.limitedtimedeal.dto.PurchaseHistory;
 import com.limitedtimedeal.model.Deal;
 import com.limitedtimedeal.model.Product;
 import com.limitedtimedeal.model.Users;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface DealService {
     Deal createDeal(DealDto dealDto);
+
+    List<BulkDealResult> createDeals(List<DealDto> dealDtos);
     public int deactivateExpiredDeals();
 
+    int expireDueDeals();
+
+    void deactivateItem(Long dealId);
+
     Users register(Users user);
 
     Product createProduct(Product product);
 
     Product buy(Long userId, Long dealId);
+
+    Product buy(Long userId, Long dealId, String idempotencyKey);
+
+    /** Buys on this node, which must own the deal; the target of a forwarded purchase. */
+    Product buyAsOwner(Long userId, Long dealId);
+
+    Product buyAsOwner(Long userId, Long dealId, String idempotencyKey);
+
+    /** Queues the purchase on the deal's lane; honours the idempotency key like {@link #buy}. */
+    CompletableFuture<Product> buyAsync(Long userId, Long dealId, String idempotencyKey);
+
+    /**
+     * Runs a purchase through the real purchase path without selling anything, to
+     * warm it up ahead of a sale; see {@link PurchaseRehearsal}.
+     */
+    Product rehearseBuy(Long userId, Long dealId, PurchaseRehearsal rehearsal);
+
+    /** The user's purchases of archived deals, newest first. */
+    List<PurchaseHistory> purchaseHistory(Long userId, int page, int size);
 }
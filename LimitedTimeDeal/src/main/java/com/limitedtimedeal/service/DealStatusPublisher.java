@@ -0,0 +1,273 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.dto.DealStatus;
+import com.limitedtimedeal.exceptions.DealNotFoundException;
+import com.limitedtimedeal.repository.DealRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes deal stock and validity to Server-Sent Events subscribers.
+ * <p>
+ * Purchases and expiries only mark a deal as changed; a publisher tick, at most
+ * {@code max-updates-per-second} times a second, reads the current status of
+ * each changed deal once and hands it to every subscriber. Each subscriber holds
+ * only the latest undelivered status, so a slow client skips intermediate values
+ * instead of buffering them. Sends run on a small fixed pool of
+ * {@code sender-threads}; idle subscribers hold no thread and a subscriber with
+ * something pending occupies at most one. A client that stops reading blocks its
+ * send only once its socket buffer is full; after {@code send-timeout-ms} it is
+ * dropped so it is never handed a sender again, and the blocked write itself
+ * gives the thread back when the container's write timeout fails it.
+ * <p>
+ * In {@code conditional-update} mode purchases only update the deal row, so the
+ * status is read from it rather than from the in-memory counters.
+ */
+@Component
+public class DealStatusPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(DealStatusPublisher.class);
+
+    private final InventoryReservationEngine inventoryEngine;
+
+    private final CatalogCache catalogCache;
+
+    private final DealRepository dealRepository;
+
+    private final PurchaseMode purchaseMode;
+
+    private final long timeoutMillis;
+
+    private final long sendTimeoutNanos;
+
+    private final ExecutorService senders;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    private final Map<Long, DealStatus> published = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DealStatusPublisher(InventoryReservationEngine inventoryEngine, CatalogCache catalogCache,
+                               DealRepository dealRepository,
+                               @Value("${deal.purchase.mode:memory}") PurchaseMode purchaseMode,
+                               @Value("${deal.stream.timeout:PT30M}") Duration timeout,
+                               @Value("${deal.stream.send-timeout-ms:5000}") long sendTimeoutMillis,
+                               @Value("${deal.stream.sender-threads:4}") int senderThreads) {
+        this.inventoryEngine = inventoryEngine;
+        this.catalogCache = catalogCache;
+        this.dealRepository = dealRepository;
+        this.purchaseMode = purchaseMode;
+        this.timeoutMillis = timeout.toMillis();
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        AtomicInteger threads = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "deal-stream-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Opens a stream for the deal; the current status is sent right away. */
+    public SseEmitter subscribe(Long dealId) {
+        DealStatus status = statusOf(dealId);
+        Subscriber subscriber = new Subscriber(dealId, new SseEmitter(timeoutMillis));
+        subscribers.computeIfAbsent(dealId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(subscriber.emitter::complete);
+        subscriber.emitter.onError(e -> unsubscribe(subscriber));
+        subscriber.offer(status);
+        return subscriber.emitter;
+    }
+
+    /** Notes that the stock or validity of the deal may have changed. */
+    public void markChanged(Long dealId) {
+        if (subscribers.containsKey(dealId)) {
+            changed.add(dealId);
+        }
+    }
+
+    @Scheduled(fixedRateString = "#{1000 / ${deal.stream.max-updates-per-second:5}}")
+    public void publish() {
+        Iterator<Long> dealIds = changed.iterator();
+        while (dealIds.hasNext()) {
+            Long dealId = dealIds.next();
+            dealIds.remove();
+            Set<Subscriber> audience = subscribers.get(dealId);
+            if (audience == null || audience.isEmpty()) {
+                published.remove(dealId);
+                continue;
+            }
+            DealStatus status;
+            try {
+                status = statusOf(dealId);
+            } catch (RuntimeException e) {
+                log.warn("Could not read the status of deal {}", dealId, e);
+                continue;
+            }
+            if (status.equals(published.put(dealId, status))) {
+                continue;
+            }
+            audience.forEach(subscriber -> subscriber.offer(status));
+        }
+    }
+
+    @Scheduled(fixedRateString = "${deal.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscribers.values().forEach(audience -> audience.forEach(Subscriber::ping));
+    }
+
+    /**
+     * Drops subscribers whose send has been blocked for longer than the send timeout,
+     * i.e. clients that stopped reading; their emitter is completed once the send
+     * returns or the container gives up on the write.
+     */
+    @Scheduled(fixedRateString = "${deal.stream.send-timeout-ms:5000}")
+    public void dropStalled() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(audience -> audience.forEach(subscriber -> {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > sendTimeoutNanos) {
+                log.debug("Dropping stalled stream subscriber of deal {}", subscriber.dealId);
+                subscriber.stalled = true;
+                unsubscribe(subscriber);
+            }
+        }));
+    }
+
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+        subscribers.values().forEach(audience -> audience.forEach(subscriber -> {
+            try {
+                subscriber.emitter.complete();
+            } catch (IllegalStateException e) {
+                // The connection is already gone
+            }
+        }));
+    }
+
+    private DealStatus statusOf(Long dealId) {
+        if (purchaseMode == PurchaseMode.CONDITIONAL_UPDATE) {
+            DealRepository.StockView stock = dealRepository.findStockById(dealId)
+                    .orElseThrow(() -> new DealNotFoundException(dealId, "Deal"));
+            return new DealStatus(dealId, Math.max(0, stock.getProductCount() - stock.getSold()),
+                    stock.getValid() && inventoryEngine.isOpen(dealId));
+        }
+        return new DealStatus(dealId, inventoryEngine.remaining(dealId),
+                catalogCache.getDeal(dealId).isValid() && inventoryEngine.isOpen(dealId));
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.dealId, (id, audience) -> {
+            audience.remove(subscriber);
+            return audience.isEmpty() ? null : audience;
+        });
+    }
+
+    private final class Subscriber {
+
+        private final Long dealId;
+
+        private final SseEmitter emitter;
+
+        // One-slot buffer: a newer status replaces one that was never sent
+        private final AtomicReference<DealStatus> pending = new AtomicReference<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // System.nanoTime() when the send in progress started, 0 when none is
+        private volatile long sendingSince;
+
+        private volatile boolean stalled;
+
+        Subscriber(Long dealId, SseEmitter emitter) {
+            this.dealId = dealId;
+            this.emitter = emitter;
+        }
+
+        void offer(DealStatus status) {
+            pending.set(status);
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        void ping() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(() -> {
+                    try {
+                        send(SseEmitter.event().comment("ping"));
+                    } catch (IOException | IllegalStateException e) {
+                        unsubscribe(this);
+                    } finally {
+                        scheduled.set(false);
+                    }
+                    if (pending.get() != null && scheduled.compareAndSet(false, true)) {
+                        drain();
+                    }
+                });
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                DealStatus status = pending.getAndSet(null);
+                if (status != null) {
+                    try {
+                        send(SseEmitter.event().name("deal").data(status));
+                    } catch (IOException | IllegalStateException e) {
+                        unsubscribe(this);
+                        scheduled.set(false);
+                        return;
+                    }
+                    continue;
+                }
+                scheduled.set(false);
+                // A status offered after getAndSet but before the flag was cleared still needs sending
+                if (pending.get() == null || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            if (stalled) {
+                throw new IllegalStateException("Subscriber was dropped");
+            }
+            sendingSince = System.nanoTime();
+            try {
+                emitter.send(event);
+            } finally {
+                sendingSince = 0;
+            }
+            if (stalled) {
+                emitter.complete();
+            }
+        }
+    }
+}
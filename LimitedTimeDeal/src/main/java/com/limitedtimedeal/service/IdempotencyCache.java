@@ -0,0 +1,88 @@
+package com.limitedtimedeal.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.limitedtimedeal.exceptions.IdempotencyKeyReuseException;
+import com.limitedtimedeal.model.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the result of purchases made with an {@code Idempotency-Key}, so a
+ * client retrying after a timeout gets the original {@link Product} back
+ * without touching the database. Keys are scoped to the user. Concurrent
+ * requests with the same key share one in-flight purchase; failed purchases
+ * are forgotten so the retry runs again.
+ */
+@Component
+public class IdempotencyCache {
+
+    private final Cache<Key, Entry> results;
+
+    @Autowired
+    public IdempotencyCache(MeterRegistry registry,
+                            @Value("${deal.idempotency.max-size:1000000}") long maxSize,
+                            @Value("${deal.idempotency.ttl:PT10M}") Duration ttl) {
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, results, "idempotency");
+    }
+
+    public Product execute(Long userId, String idempotencyKey, Long dealId, Supplier<Product> purchase) {
+        Key key = new Key(userId, idempotencyKey);
+        Entry entry = new Entry(dealId, new CompletableFuture<>());
+        // getIfPresent first so replays show up in the cache hit statistics
+        Entry existing = results.getIfPresent(key);
+        if (existing == null) {
+            existing = results.asMap().putIfAbsent(key, entry);
+        }
+        if (existing != null) {
+            if (!existing.dealId().equals(dealId)) {
+                throw new IdempotencyKeyReuseException(idempotencyKey, existing.dealId(), dealId);
+            }
+            return await(existing.result());
+        }
+        try {
+            Product product = purchase.get();
+            entry.result().complete(product);
+            return product;
+        } catch (Throwable e) {
+            // Errors too, or every waiter on the key would hang
+            results.asMap().remove(key, entry);
+            entry.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static Product await(CompletableFuture<Product> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            // Waiters see the same error as the request that made the purchase
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Key(Long userId, String idempotencyKey) {
+    }
+
+    private record Entry(Long dealId, CompletableFuture<Product> result) {
+    }
+}
@@ -0,0 +1,200 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.exceptions.DealNotFoundException;
+import com.limitedtimedeal.repository.DealRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the remaining stock of every deal in memory so purchases can be claimed
+ * with a CAS instead of a row lock. Very hot deals can split their stock into
+ * stripes (see {@link StripedStockCounter}). Claimed units are written back to
+ * {@code Deal.sold} asynchronously and the counters are rebuilt on startup from
+ * the committed deal_users rows, together with the start and expiry schedule
+ * of each live deal.
+ * With the {@link ClaimLog} enabled the sold count is taken from the recovered
+ * claims instead, since {@code Deal.sold} may lag the log after a crash.
+ */
+@Component
+public class InventoryReservationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryReservationEngine.class);
+
+    private final DealRepository dealRepository;
+
+    private final DealExpiryWheel expiryWheel;
+
+    private final DealMetrics dealMetrics;
+
+    private final PurchaseDedupFilter dedupFilter;
+
+    private final ClaimLog claimLog;
+
+    private final Map<Long, StockCounter> remaining = new ConcurrentHashMap<>();
+
+    private final Map<Long, AtomicLong> unflushedClaims = new ConcurrentHashMap<>();
+
+    private final Set<Long> closedDeals = ConcurrentHashMap.newKeySet();
+
+    // Epoch millis of the scheduled start of deals that have not started yet
+    private final Map<Long, Long> startsAt = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InventoryReservationEngine(DealRepository dealRepository, DealExpiryWheel expiryWheel,
+                                      DealMetrics dealMetrics, PurchaseDedupFilter dedupFilter, ClaimLog claimLog) {
+        this.dealRepository = dealRepository;
+        this.expiryWheel = expiryWheel;
+        this.dealMetrics = dealMetrics;
+        this.dedupFilter = dedupFilter;
+        this.claimLog = claimLog;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        for (DealRepository.StockView stock : dealRepository.findActiveStock()) {
+            remaining.computeIfAbsent(stock.getId(), id -> load(stock));
+        }
+    }
+
+    public void register(Long dealId, long productCount, int stockStripes, LocalDateTime startTime,
+                         LocalDateTime endTime) {
+        scheduleStart(dealId, startTime);
+        remaining.put(dealId, StockCounter.of(productCount, stockStripes));
+        dealMetrics.registerStockGauge(dealId, () -> remaining(dealId));
+        expiryWheel.schedule(dealId, endTime);
+    }
+
+    /**
+     * Whether the deal's scheduled start has passed. Loads the deal if this node has
+     * not seen it yet; once started, the check is a single map miss.
+     */
+    public boolean hasStarted(Long dealId) {
+        stockOf(dealId);
+        Long start = startsAt.get(dealId);
+        if (start == null) {
+            return true;
+        }
+        if (System.currentTimeMillis() < start) {
+            return false;
+        }
+        startsAt.remove(dealId);
+        return true;
+    }
+
+    /** Loads the deal's stock counter ahead of its first purchase and returns the units left. */
+    public long preload(Long dealId) {
+        return stockOf(dealId).remaining();
+    }
+
+    /** Whether the deal is still open for purchases as far as this node knows. */
+    public boolean isOpen(Long dealId) {
+        return !closedDeals.contains(dealId);
+    }
+
+    /** Stops selling the deal immediately, ahead of the database update. */
+    public void close(Long dealId) {
+        closedDeals.add(dealId);
+    }
+
+    /**
+     * Claims one unit of the deal. Returns false without touching the database
+     * once the deal is sold out.
+     */
+    public boolean tryReserve(Long dealId, Long userId) {
+        return stockOf(dealId).tryAcquire(userId);
+    }
+
+    /** Gives back a unit claimed by {@link #tryReserve} whose purchase failed. */
+    public void release(Long dealId, Long userId) {
+        stockOf(dealId).release(userId);
+    }
+
+    /** Marks a reserved unit as sold; it is persisted by the next flush. */
+    public void confirm(Long dealId) {
+        unflushedClaims.computeIfAbsent(dealId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /** Drops the deal's counter so the next purchase reloads it from the database. */
+    public void forget(Long dealId) {
+        remaining.remove(dealId);
+    }
+
+    /** Drops everything kept for an archived deal, including its stock gauge. */
+    public void evict(Long dealId) {
+        remaining.remove(dealId);
+        closedDeals.remove(dealId);
+        startsAt.remove(dealId);
+        dealMetrics.removeStockGauge(dealId);
+    }
+
+    public long remaining(Long dealId) {
+        StockCounter stock = remaining.get(dealId);
+        return stock == null ? 0 : stock.remaining();
+    }
+
+    @Scheduled(fixedDelayString = "${deal.inventory.flush-interval-ms:200}")
+    @PreDestroy
+    public void flush() {
+        unflushedClaims.forEach((dealId, claims) -> {
+            long units = claims.getAndSet(0);
+            if (units == 0) {
+                return;
+            }
+            try {
+                dealRepository.addSold(dealId, units);
+            } catch (RuntimeException e) {
+                claims.addAndGet(units);
+                log.warn("Could not persist {} claimed units of deal {}, retrying on next flush", units, dealId, e);
+            }
+        });
+    }
+
+    private StockCounter stockOf(Long dealId) {
+        StockCounter stock = remaining.get(dealId);
+        if (stock != null) {
+            return stock;
+        }
+        // Query outside the map so a slow load never holds a bin lock other deals hash to;
+        // concurrent first purchases may both load, load() is idempotent and one counter wins
+        StockCounter loaded = dealRepository.findStockById(dealId)
+                .map(this::load)
+                .orElseThrow(() -> new DealNotFoundException(dealId, "Deal"));
+        StockCounter raced = remaining.putIfAbsent(dealId, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    private StockCounter load(DealRepository.StockView stock) {
+        Long dealId = stock.getId();
+        dealMetrics.registerStockGauge(dealId, () -> remaining(dealId));
+        if (stock.getValid()) {
+            scheduleStart(dealId, stock.getStartTime());
+            expiryWheel.schedule(stock.getId(), stock.getEndTime());
+        } else {
+            closedDeals.add(stock.getId());
+        }
+        // Deal.sold is flushed asynchronously and lags the committed claims after a crash
+        long sold = claimLog.isEnabled()
+                ? dedupFilter.buyerCount(dealId)
+                : Math.max(stock.getSold(), stock.getClaimed());
+        return StockCounter.of(Math.max(0, stock.getProductCount() - sold), stock.getStockStripes());
+    }
+
+    private void scheduleStart(Long dealId, LocalDateTime startTime) {
+        long start = startTime.atZone(DealExpiryWheel.DEAL_ZONE).toInstant().toEpochMilli();
+        if (start > System.currentTimeMillis()) {
+            startsAt.put(dealId, start);
+        }
+    }
+}
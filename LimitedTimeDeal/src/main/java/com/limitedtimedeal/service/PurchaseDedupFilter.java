@@ -0,0 +1,237 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.repository.DealClaimRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Exact in-memory copy of the deal_users table, used to reject repeat buyers
+ * before a transaction is opened. Each deal keeps its buyer ids in lock-striped
+ * primitive long sets so no boxing happens on lookup.
+ * <p>
+ * The filter is filled before the web server starts accepting requests, since
+ * with write-behind it is the only uniqueness check. When the {@link ClaimLog}
+ * is enabled it is rebuilt from the log instead of the table, and the log's
+ * snapshots keep only the deals it still tracks.
+ */
+@Component
+public class PurchaseDedupFilter {
+
+    private static final int STRIPES = 16;
+
+    private final DealClaimRepository dealClaimRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ClaimLog claimLog;
+
+    private final Map<Long, StripedLongSet> buyersByDeal = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PurchaseDedupFilter(DealClaimRepository dealClaimRepository, TransactionTemplate transactionTemplate,
+                               ClaimLog claimLog) {
+        this.dealClaimRepository = dealClaimRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.claimLog = claimLog;
+    }
+
+    @PostConstruct
+    public void recover() {
+        if (claimLog.isEnabled()) {
+            claimLog.recover(this::add, buyersByDeal::containsKey);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<DealClaimRepository.ClaimKey> keys = dealClaimRepository.streamAllKeys()) {
+                keys.forEach(key -> add(key.getDealId(), key.getUserId()));
+            }
+        });
+    }
+
+    public boolean contains(Long dealId, Long userId) {
+        StripedLongSet buyers = buyersByDeal.get(dealId);
+        return buyers != null && buyers.contains(userId);
+    }
+
+    /** Records a committed purchase; returns false if the user was already known. */
+    public boolean add(Long dealId, Long userId) {
+        return buyersByDeal.computeIfAbsent(dealId, id -> new StripedLongSet()).add(userId);
+    }
+
+    /** Number of distinct buyers recorded for the deal. */
+    public long buyerCount(Long dealId) {
+        StripedLongSet buyers = buyersByDeal.get(dealId);
+        return buyers == null ? 0 : buyers.size();
+    }
+
+    /** Replaces what is known about the deal's buyers with the deal_users rows. */
+    public void reload(Long dealId) {
+        StripedLongSet buyers = new StripedLongSet();
+        dealClaimRepository.findUserIdsByDealId(dealId).forEach(buyers::add);
+        buyersByDeal.put(dealId, buyers);
+    }
+
+    /** Drops every buyer of the deal, once it has been archived and can no longer be bought. */
+    public void forget(Long dealId) {
+        buyersByDeal.remove(dealId);
+    }
+
+    /** Forgets a purchase that was recorded optimistically but could not be accepted. */
+    public void remove(Long dealId, Long userId) {
+        StripedLongSet buyers = buyersByDeal.get(dealId);
+        if (buyers != null) {
+            buyers.remove(userId);
+        }
+    }
+
+    private static final class StripedLongSet {
+
+        private final LongHashSet[] stripes = new LongHashSet[STRIPES];
+
+        StripedLongSet() {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new LongHashSet();
+            }
+        }
+
+        boolean contains(long value) {
+            LongHashSet stripe = stripeFor(value);
+            synchronized (stripe) {
+                return stripe.contains(value);
+            }
+        }
+
+        boolean add(long value) {
+            LongHashSet stripe = stripeFor(value);
+            synchronized (stripe) {
+                return stripe.add(value);
+            }
+        }
+
+        void remove(long value) {
+            LongHashSet stripe = stripeFor(value);
+            synchronized (stripe) {
+                stripe.remove(value);
+            }
+        }
+
+        long size() {
+            long size = 0;
+            for (LongHashSet stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.size();
+                }
+            }
+            return size;
+        }
+
+        private LongHashSet stripeFor(long value) {
+            return stripes[(int) (mix(value) >>> 60) & (STRIPES - 1)];
+        }
+    }
+
+    /** Open-addressing set of longs; 0 is the empty marker and tracked separately. */
+    private static final class LongHashSet {
+
+        private long[] table = new long[16];
+        private int size;
+        private boolean containsZero;
+
+        boolean contains(long value) {
+            if (value == 0) {
+                return containsZero;
+            }
+            int mask = table.length - 1;
+            for (int i = (int) mix(value) & mask; ; i = (i + 1) & mask) {
+                long slot = table[i];
+                if (slot == 0) {
+                    return false;
+                }
+                if (slot == value) {
+                    return true;
+                }
+            }
+        }
+
+        boolean add(long value) {
+            if (value == 0) {
+                boolean added = !containsZero;
+                containsZero = true;
+                return added;
+            }
+            if ((size + 1) * 2 > table.length) {
+                resize();
+            }
+            if (!insert(table, value)) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        void remove(long value) {
+            if (value == 0) {
+                containsZero = false;
+                return;
+            }
+            int mask = table.length - 1;
+            int i = (int) mix(value) & mask;
+            while (table[i] != value) {
+                if (table[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            // Backward-shift the rest of the probe run so lookups never hit a hole
+            int hole = i;
+            for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+                int home = (int) mix(table[j]) & mask;
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    table[hole] = table[j];
+                    hole = j;
+                }
+            }
+            table[hole] = 0;
+            size--;
+        }
+
+        int size() {
+            return containsZero ? size + 1 : size;
+        }
+
+        private void resize() {
+            long[] resized = new long[table.length * 2];
+            for (long value : table) {
+                if (value != 0) {
+                    insert(resized, value);
+                }
+            }
+            table = resized;
+        }
+
+        private static boolean insert(long[] table, long value) {
+            int mask = table.length - 1;
+            for (int i = (int) mix(value) & mask; ; i = (i + 1) & mask) {
+                long slot = table[i];
+                if (slot == value) {
+                    return false;
+                }
+                if (slot == 0) {
+                    table[i] = value;
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
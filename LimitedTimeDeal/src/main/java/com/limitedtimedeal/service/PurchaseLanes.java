@@ -0,0 +1,73 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.exceptions.PurchaseBacklogFullException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor for asynchronous purchases. Each deal is pinned to one of
+ * {@code deal.async.lanes} single-threaded lanes, so purchases of the same deal
+ * run one after another instead of contending with each other, while different
+ * deals proceed in parallel. A full lane rejects the purchase right away with
+ * {@link PurchaseBacklogFullException} rather than queueing without bound.
+ */
+@Component
+public class PurchaseLanes {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    @Autowired
+    public PurchaseLanes(MeterRegistry registry,
+                         @Value("${deal.async.lanes:8}") int laneCount,
+                         @Value("${deal.async.queue-capacity:10000}") int queueCapacity) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "purchase-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> new Thread(runnable, name),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+        Gauge.builder("deal.purchase.lanes.queued", this, PurchaseLanes::queued)
+                .description("Asynchronous purchases waiting for their lane")
+                .register(registry);
+    }
+
+    public <T> CompletableFuture<T> submit(Long dealId, Supplier<T> purchase) {
+        try {
+            return CompletableFuture.supplyAsync(purchase, laneFor(dealId));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new PurchaseBacklogFullException(dealId));
+        }
+    }
+
+    public int queued() {
+        return Arrays.stream(lanes).mapToInt(lane -> lane.getQueue().size()).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private ThreadPoolExecutor laneFor(Long dealId) {
+        // Deal ids are sequential, so consecutive deals land on consecutive lanes
+        return lanes[Math.floorMod(dealId.hashCode(), lanes.length)];
+    }
+}
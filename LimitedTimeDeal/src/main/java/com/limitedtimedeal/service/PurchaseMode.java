@@ -0,0 +1,14 @@
+package com.limitedtimedeal.service;
+
+/**
+ * How {@link DealService#buy} decides whether a unit can be claimed, selected
+ * with {@code deal.purchase.mode}.
+ */
+public enum PurchaseMode {
+    /** Stock is reserved from in-memory counters and the claim is persisted afterwards. */
+    MEMORY,
+    /** The database decides: one conditional statement claims the unit and records the buyer. */
+    CONDITIONAL_UPDATE,
+    /** Each deal's purchases are applied one at a time by the shard that owns it (see {@link DealActorSystem}). */
+    ACTOR
+}
@@ -0,0 +1,19 @@
+package com.limitedtimedeal.service;
+
+/**
+ * A purchase run through the real purchase path by {@link SaleArmer} before a
+ * sale starts. It reserves from its own scratch counter, which is discarded
+ * afterwards, and stops before anything is written, queued, logged or counted.
+ */
+public final class PurchaseRehearsal {
+
+    private final StockCounter scratch;
+
+    public PurchaseRehearsal(long units, int stripes) {
+        this.scratch = StockCounter.of(units, stripes);
+    }
+
+    public boolean tryReserve(Long userId) {
+        return scratch.tryAcquire(userId);
+    }
+}
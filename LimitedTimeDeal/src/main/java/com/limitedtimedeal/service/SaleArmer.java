@@ -0,0 +1,197 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.cluster.ClusterCoordinator;
+import com.limitedtimedeal.dto.SaleReadiness;
+import com.limitedtimedeal.model.Deal;
+import com.limitedtimedeal.exceptions.DuplicatePurchaseException;
+import com.limitedtimedeal.model.Product;
+import com.limitedtimedeal.repository.DealRepository;
+import com.limitedtimedeal.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets this node ready for a deal's sale shortly before it starts, so the first
+ * buyers do not pay for cold caches, unparsed queries or interpreted code. Arming
+ * a deal:
+ * <ol>
+ *     <li>reloads the deal and its product into the {@link CatalogCache}, including
+ *     the product's response bytes, and loads the deal's stock counter when this
+ *     node owns the deal;</li>
+ *     <li>runs {@code warmup-rounds} rounds of rehearsed purchases of the deal by up
+ *     to {@code warmup-users} registered users.</li>
+ * </ol>
+ * A rehearsal drives the real purchase path of the configured purchase mode with
+ * a {@link PurchaseRehearsal}: the same checks, catalog and dedup lookups and user
+ * lookup as a sale, with units taken from a scratch counter that is then dropped.
+ * It stops before the claim, so it writes no row, takes no index lock, consumes no
+ * sequence value and is not logged, queued or counted in the metrics. The JDBC pool
+ * is kept full by Hikari's {@code minimum-idle} rather than here.
+ * <p>
+ * Deals are armed {@code deal.arming.lead-time} before their start, or on request,
+ * one at a time on a dedicated thread; {@link #readiness} reports the outcome.
+ */
+@Component
+public class SaleArmer {
+
+    private static final Logger log = LoggerFactory.getLogger(SaleArmer.class);
+
+    private final DealRepository dealRepository;
+
+    private final UserRepository userRepository;
+
+    private final CatalogCache catalogCache;
+
+    private final InventoryReservationEngine inventoryEngine;
+
+    private final DealService dealService;
+
+    private final ClusterCoordinator clusterCoordinator;
+
+    private final DataSource dataSource;
+
+    private final boolean enabled;
+
+    private final Duration leadTime;
+
+    private final int warmupUsers;
+
+    private final int warmupRounds;
+
+    private final Map<Long, SaleReadiness> readiness = new ConcurrentHashMap<>();
+
+    private final ExecutorService armingThread =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "sale-arming"));
+
+    @Autowired
+    public SaleArmer(DealRepository dealRepository, UserRepository userRepository, CatalogCache catalogCache,
+                     InventoryReservationEngine inventoryEngine, DealService dealService,
+                     ClusterCoordinator clusterCoordinator, DataSource dataSource,
+                     @Value("${deal.arming.enabled:true}") boolean enabled,
+                     @Value("${deal.arming.lead-time:PT30S}") Duration leadTime,
+                     @Value("${deal.arming.warmup-users:500}") int warmupUsers,
+                     @Value("${deal.arming.warmup-rounds:4}") int warmupRounds) {
+        this.dealRepository = dealRepository;
+        this.userRepository = userRepository;
+        this.catalogCache = catalogCache;
+        this.inventoryEngine = inventoryEngine;
+        this.dealService = dealService;
+        this.clusterCoordinator = clusterCoordinator;
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.leadTime = leadTime;
+        this.warmupUsers = warmupUsers;
+        this.warmupRounds = warmupRounds;
+    }
+
+    /** Arms live deals starting within the lead time that have not been armed yet. */
+    @Scheduled(fixedDelayString = "${deal.arming.check-interval-ms:1000}")
+    public void armDueDeals() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now(DealExpiryWheel.DEAL_ZONE);
+        // Readiness of sales that started a lead time ago is no longer of interest
+        readiness.values().removeIf(state -> state.startTime().isBefore(now.minus(leadTime)));
+        for (Long dealId : dealRepository.findIdsStartingBetween(now, now.plus(leadTime))) {
+            if (!readiness.containsKey(dealId)) {
+                arm(dealId);
+            }
+        }
+    }
+
+    /**
+     * Queues the deal for arming unless it is already armed or being armed, and
+     * returns its current readiness. Throws if the deal does not exist.
+     */
+    public SaleReadiness arm(Long dealId) {
+        Deal deal = catalogCache.getDeal(dealId);
+        SaleReadiness arming = SaleReadiness.arming(dealId, deal.getStartTime());
+        // Atomic, so two callers re-arming a failed deal cannot both queue it
+        SaleReadiness current = readiness.compute(dealId, (id, state) ->
+                state == null || state.state() == SaleReadiness.State.FAILED ? arming : state);
+        if (current != arming) {
+            return current;
+        }
+        armingThread.execute(() -> readiness.put(dealId, prepare(dealId, deal.getStartTime())));
+        return arming;
+    }
+
+    /** Readiness of the deal, or null if it was never armed. */
+    public SaleReadiness readiness(Long dealId) {
+        return readiness.get(dealId);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        armingThread.shutdownNow();
+        armingThread.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private SaleReadiness prepare(Long dealId, LocalDateTime startTime) {
+        try {
+            catalogCache.invalidateDeal(dealId);
+            Deal deal = catalogCache.getDeal(dealId);
+            Product product = catalogCache.getProduct(deal.getProductId());
+            catalogCache.productJson(product);
+            long stock = 0;
+            if (clusterCoordinator.isLocal(dealId)) {
+                clusterCoordinator.takeOwnership(dealId);
+                stock = inventoryEngine.preload(dealId);
+            }
+            long start = System.nanoTime();
+            int purchases = warmUp(deal);
+            long warmupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            int connections = pooledConnections();
+            log.info("Armed deal {}: {} units loaded, {} pooled connections, {} rehearsed purchases in {} ms",
+                    dealId, stock, connections, purchases, warmupMillis);
+            return new SaleReadiness(dealId, SaleReadiness.State.READY, startTime, stock, connections, purchases,
+                    warmupMillis, LocalDateTime.now(DealExpiryWheel.DEAL_ZONE), null);
+        } catch (RuntimeException e) {
+            log.warn("Could not arm deal {}", dealId, e);
+            return SaleReadiness.failed(dealId, startTime, e.getMessage());
+        }
+    }
+
+    /** Connections currently open in the pool, or -1 if the datasource is not a Hikari pool. */
+    private int pooledConnections() {
+        if (!(dataSource instanceof HikariDataSource hikari) || hikari.getHikariPoolMXBean() == null) {
+            return -1;
+        }
+        return hikari.getHikariPoolMXBean().getTotalConnections();
+    }
+
+    private int warmUp(Deal deal) {
+        List<Long> userIds = userRepository.findIds(PageRequest.of(0, warmupUsers));
+        int purchases = 0;
+        for (int round = 0; round < warmupRounds; round++) {
+            PurchaseRehearsal rehearsal = new PurchaseRehearsal(userIds.size(), deal.getStockStripes());
+            for (Long userId : userIds) {
+                try {
+                    catalogCache.productJson(dealService.rehearseBuy(userId, deal.getId(), rehearsal));
+                    purchases++;
+                } catch (DuplicatePurchaseException e) {
+                    // Armed after the start, so this user already bought the deal
+                }
+            }
+        }
+        return purchases;
+    }
+}
@@ -0,0 +1,20 @@
+package com.limitedtimedeal.service;
+
+/**
+ * Remaining units of one deal. Implementations never hand out more units than
+ * they were created with and only report sold-out once every unit is taken.
+ */
+public interface StockCounter {
+
+    /** Takes one unit, using {@code buyerHash} to spread contention; false once sold out. */
+    boolean tryAcquire(long buyerHash);
+
+    /** Returns a unit taken by {@link #tryAcquire} with the same hash. */
+    void release(long buyerHash);
+
+    long remaining();
+
+    static StockCounter of(long units, int stripes) {
+        return stripes > 1 ? new StripedStockCounter(units, stripes) : new AtomicStockCounter(units);
+    }
+}
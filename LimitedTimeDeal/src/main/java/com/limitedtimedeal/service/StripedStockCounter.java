@@ -0,0 +1,86 @@
+package com.limitedtimedeal.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stock split into stripes on separate cache lines, for deals hot enough that a
+ * single counter becomes a contention point. A buyer takes from the stripe its
+ * hash maps to and borrows from the following stripes once that one is empty.
+ * <p>
+ * Units only come back through {@link #release}, which bumps a release count.
+ * Sold-out is reported only after a full pass found every stripe empty with no
+ * release in between, so it is never reported while units remain.
+ */
+public class StripedStockCounter implements StockCounter {
+
+    public static final int MAX_STRIPES = 64;
+
+    // 16 longs = 128 bytes between stripes, enough to keep them off each other's cache lines
+    private static final int PAD = 16;
+
+    private final AtomicLongArray stripes;
+
+    private final int stripeCount;
+
+    private final AtomicLong releases = new AtomicLong();
+
+    public StripedStockCounter(long units, int stripeCount) {
+        if (stripeCount < 1 || stripeCount > MAX_STRIPES) {
+            throw new IllegalArgumentException("Stripe count must be between 1 and " + MAX_STRIPES);
+        }
+        this.stripeCount = stripeCount;
+        this.stripes = new AtomicLongArray(stripeCount * PAD);
+        for (int i = 0; i < stripeCount; i++) {
+            // Spread the units as evenly as possible; the first stripes take the remainder
+            stripes.set(i * PAD, units / stripeCount + (i < units % stripeCount ? 1 : 0));
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(long buyerHash) {
+        int home = homeStripe(buyerHash);
+        while (true) {
+            long releasesBefore = releases.get();
+            for (int i = 0; i < stripeCount; i++) {
+                if (tryTake(((home + i) % stripeCount) * PAD)) {
+                    return true;
+                }
+            }
+            if (releases.get() == releasesBefore) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void release(long buyerHash) {
+        stripes.incrementAndGet(homeStripe(buyerHash) * PAD);
+        releases.incrementAndGet();
+    }
+
+    @Override
+    public long remaining() {
+        long sum = 0;
+        for (int i = 0; i < stripeCount; i++) {
+            sum += stripes.get(i * PAD);
+        }
+        return sum;
+    }
+
+    private boolean tryTake(int index) {
+        long current;
+        do {
+            current = stripes.get(index);
+            if (current <= 0) {
+                return false;
+            }
+        } while (!stripes.compareAndSet(index, current, current - 1));
+        return true;
+    }
+
+    private int homeStripe(long buyerHash) {
+        long h = buyerHash * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % stripeCount);
+    }
+}
@@ -1,28 +1,77 @@
 package com.limitedtimedeal.service.impl;
 
+import com.limitedtimedeal.cluster.ClusterCoordinator;
+import com.limitedtimedeal.dto.BulkDealResult;
 import com.limitedtimedeal.dto.DealDto;
+import com.limitedtimedeal.dto.PurchaseHistory;
+import com.limitedtimedeal.exceptions.DealExpiredException;
 import com.limitedtimedeal.exceptions.DealNotFoundException;
+import com.limitedtimedeal.exceptions.DealNotOwnedException;
+import com.limitedtimedeal.exceptions.DealNotStartedException;
+import com.limitedtimedeal.exceptions.DealSoldOutException;
+import com.limitedtimedeal.exceptions.DuplicatePurchaseException;
 import com.limitedtimedeal.exceptions.InvalidDealException;
+import com.limitedtimedeal.exceptions.PurchaseBacklogFullException;
 import com.limitedtimedeal.model.Deal;
+import com.limitedtimedeal.model.DealClaim;
 import com.limitedtimedeal.model.Product;
 import com.limitedtimedeal.model.Users;
+import com.limitedtimedeal.repository.ArchivedDealRepository;
+import com.limitedtimedeal.repository.DealClaimRepository;
 import com.limitedtimedeal.repository.DealRepository;
 import com.limitedtimedeal.repository.ProductRepository;
 import com.limitedtimedeal.repository.UserRepository;
+import com.limitedtimedeal.service.ActiveDealSnapshot;
+import com.limitedtimedeal.service.AdmissionController;
+import com.limitedtimedeal.service.CatalogCache;
+import com.limitedtimedeal.service.ClaimLog;
+import com.limitedtimedeal.service.ClaimWriteBehind;
+import com.limitedtimedeal.service.DealActorSystem;
+import com.limitedtimedeal.service.DealExpiryWheel;
+import com.limitedtimedeal.service.DealMetrics;
 import com.limitedtimedeal.service.DealService;
+import com.limitedtimedeal.service.DealStatusPublisher;
+import com.limitedtimedeal.service.IdempotencyCache;
+import com.limitedtimedeal.service.InventoryReservationEngine;
+import com.limitedtimedeal.service.PurchaseDedupFilter;
+import com.limitedtimedeal.service.PurchaseLanes;
+import com.limitedtimedeal.service.PurchaseMode;
+import com.limitedtimedeal.service.PurchaseRehearsal;
+import com.limitedtimedeal.service.StripedStockCounter;
+import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class DealServiceImpl implements DealService {
 
+    private static final Logger log = LoggerFactory.getLogger(DealServiceImpl.class);
+
+    private static final int EXPIRY_BATCH_SIZE = 1000;
+
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     @Autowired
     private DealRepository dealRepository;
 
@@ -32,30 +81,239 @@ public class DealServiceImpl implements DealService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private DealClaimRepository dealClaimRepository;
+
+    @Autowired
+    private ArchivedDealRepository archivedDealRepository;
+
+    @Autowired
+    private InventoryReservationEngine inventoryEngine;
+
+    @Autowired
+    private PurchaseDedupFilter dedupFilter;
+
+    @Autowired
+    private DealExpiryWheel expiryWheel;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private ClaimWriteBehind claimWriteBehind;
+
+    @Autowired
+    private ClaimLog claimLog;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    @Autowired
+    private DealStatusPublisher dealStatusPublisher;
+
+    @Autowired
+    private ActiveDealSnapshot activeDealSnapshot;
+
+    @Autowired
+    private PurchaseLanes purchaseLanes;
+
+    @Autowired
+    private DealActorSystem dealActorSystem;
+
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
+    @Autowired
+    private DealMetrics dealMetrics;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Value("${deal.purchase.mode:memory}")
+    private PurchaseMode purchaseMode;
+
+    @Value("${deal.expiry.sweep.chunk-size:100}")
+    private int sweepChunkSize;
+
+    @Value("${deal.expiry.sweep.chunk-pause-ms:5}")
+    private long sweepChunkPauseMillis;
+
+    private final AtomicBoolean sweepRunning = new AtomicBoolean();
+
+    @PostConstruct
+    public void checkStoreMode() {
+        // Conditional-update claims are decided and recorded by the database alone, so the log would miss them
+        if (purchaseMode == PurchaseMode.CONDITIONAL_UPDATE && claimLog.isEnabled()) {
+            throw new IllegalStateException("deal.store.mode=log cannot be combined with deal.purchase.mode=conditional-update");
+        }
+    }
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
 
     @Override
     public Deal createDeal(DealDto dealDto) {
+        Deal savedDeal = dealRepository.save(toDeal(dealDto));
+        activate(savedDeal);
+        return savedDeal;
+    }
+
+    @Override
+    public List<BulkDealResult> createDeals(List<DealDto> dealDtos) {
+        LocalDateTime now = LocalDateTime.now(java.time.ZoneId.of("Asia/Kolkata"));
+        Set<Long> productIds = new HashSet<>();
+        dealDtos.forEach(dealDto -> productIds.add(dealDto.getProductId()));
+        productIds.remove(null);
+        Set<Long> knownProductIds = new HashSet<>();
+        productRepository.findAllById(productIds).forEach(product -> knownProductIds.add(product.getId()));
+
+        // Validate the whole batch before inserting anything
+        BulkDealResult[] results = new BulkDealResult[dealDtos.size()];
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < dealDtos.size(); i++) {
+            String error = validate(dealDtos.get(i), knownProductIds, now);
+            if (error == null) {
+                validIndexes.add(i);
+            } else {
+                results[i] = BulkDealResult.rejected(i, error);
+            }
+        }
+
+        // One transaction per chunk; ids come from the pooled deal sequence and rows go out in JDBC batches
+        for (int from = 0; from < validIndexes.size(); from += BULK_CHUNK_SIZE) {
+            List<Integer> chunk = validIndexes.subList(from, Math.min(from + BULK_CHUNK_SIZE, validIndexes.size()));
+            List<Deal> deals = new ArrayList<>(chunk.size());
+            chunk.forEach(index -> deals.add(toDeal(dealDtos.get(index))));
+            List<Deal> savedDeals = transactionTemplate.execute(status -> dealRepository.saveAll(deals));
+            for (int i = 0; i < chunk.size(); i++) {
+                Deal savedDeal = savedDeals.get(i);
+                activate(savedDeal);
+                results[chunk.get(i)] = BulkDealResult.created(chunk.get(i), savedDeal.getId());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static String validate(DealDto dealDto, Set<Long> knownProductIds, LocalDateTime now) {
+        if (dealDto.getProductId() == null || !knownProductIds.contains(dealDto.getProductId())) {
+            return "Product with id " + dealDto.getProductId() + " was not found.";
+        }
+        if (dealDto.getEndTime() == null || !dealDto.getEndTime().isAfter(now)) {
+            return "End time must be in the future.";
+        }
+        if (dealDto.getStartTime() != null && !dealDto.getStartTime().isBefore(dealDto.getEndTime())) {
+            return "Start time must be before the end time.";
+        }
+        if (dealDto.getProductCount() == null || dealDto.getProductCount() <= 0) {
+            return "Product count must be positive.";
+        }
+        if (dealDto.getDiscount() < 0 || dealDto.getDiscount() > 100) {
+            return "Discount must be between 0 and 100.";
+        }
+        if (dealDto.getStockStripes() != null
+                && (dealDto.getStockStripes() < 1 || dealDto.getStockStripes() > StripedStockCounter.MAX_STRIPES)) {
+            return "Stock stripes must be between 1 and " + StripedStockCounter.MAX_STRIPES + ".";
+        }
+        return null;
+    }
+
+    private static Deal toDeal(DealDto dealDto) {
         Deal deal = new Deal();
         deal.setDiscount(dealDto.getDiscount());
+        deal.setStartTime(dealDto.getStartTime() != null
+                ? dealDto.getStartTime()
+                : LocalDateTime.now(DealExpiryWheel.DEAL_ZONE));
         deal.setEndTime(dealDto.getEndTime());
         deal.setProductCount(dealDto.getProductCount());
         deal.setProductId(dealDto.getProductId());
-        return dealRepository.save(deal);
+        if (dealDto.getStockStripes() != null) {
+            deal.setStockStripes(Math.max(1, Math.min(dealDto.getStockStripes(), StripedStockCounter.MAX_STRIPES)));
+        }
+        return deal;
     }
 
+    private void activate(Deal savedDeal) {
+        inventoryEngine.register(savedDeal.getId(), savedDeal.getProductCount(), savedDeal.getStockStripes(),
+                savedDeal.getStartTime(), savedDeal.getEndTime());
+        catalogCache.put(savedDeal);
+        activeDealSnapshot.markChanged(savedDeal.getId());
+    }
 
+
+    @Override
     @Transactional
     public void deactivateItem(Long dealId) {
         Deal deal = dealRepository.findById(dealId)
                 .orElseThrow(() -> new DealNotFoundException(dealId, "Deal"));
         deal.setValid(false);
         dealRepository.save(deal);
+        inventoryEngine.close(dealId);
+        admissionController.forget(dealId);
+        unlistAfterCommit(dealId);
     }
 
-    @Transactional
+    /**
+     * Deactivates expired deals in chunks of {@code deal.expiry.sweep.chunk-size}, oldest
+     * end time first, each chunk in its own short transaction so row locks are never held
+     * across the whole sweep. Deactivated deals drop out of the (is_valid, end_time) range,
+     * so an interrupted sweep simply resumes where it stopped on the next run.
+     */
+    @Override
     public int deactivateExpiredDeals() {
-        LocalDateTime now = LocalDateTime.now(java.time.ZoneId.of("Asia/Kolkata")); // Get current time in IST
-        return dealRepository.deactivateExpiredDeals(now);
+        if (!sweepRunning.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now(java.time.ZoneId.of("Asia/Kolkata")); // Get current time in IST
+            int deactivated = 0;
+            for (int chunk = 1; ; chunk++) {
+                long start = System.nanoTime();
+                List<Long> expiredIds = dealRepository.findExpiredIds(now, PageRequest.of(0, sweepChunkSize));
+                if (expiredIds.isEmpty()) {
+                    break;
+                }
+                deactivated += dealRepository.deactivateDeals(expiredIds);
+                for (Long dealId : expiredIds) {
+                    inventoryEngine.close(dealId);
+                    admissionController.forget(dealId);
+                    unlistAfterCommit(dealId);
+                }
+                dealMetrics.recordSweepChunk(System.nanoTime() - start);
+                log.debug("Expiry sweep chunk {}: {} deals, {} deactivated so far", chunk, expiredIds.size(), deactivated);
+                if (expiredIds.size() < sweepChunkSize) {
+                    break;
+                }
+                Thread.sleep(sweepChunkPauseMillis);
+            }
+            dealMetrics.recordSweepExpiry(deactivated);
+            return deactivated;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            sweepRunning.set(false);
+        }
+    }
+
+    @Override
+    public int expireDueDeals() {
+        List<Long> dueDealIds = expiryWheel.advance(System.currentTimeMillis());
+        if (dueDealIds.isEmpty()) {
+            return 0;
+        }
+        for (Long dealId : dueDealIds) {
+            inventoryEngine.close(dealId);
+            admissionController.forget(dealId);
+        }
+        int deactivated = 0;
+        for (int from = 0; from < dueDealIds.size(); from += EXPIRY_BATCH_SIZE) {
+            List<Long> batch = dueDealIds.subList(from, Math.min(from + EXPIRY_BATCH_SIZE, dueDealIds.size()));
+            deactivated += dealRepository.deactivateDeals(batch);
+            batch.forEach(this::unlistAfterCommit);
+        }
+        dealMetrics.recordWheelExpiry(deactivated);
+        return deactivated;
     }
 
     @Override
@@ -65,37 +323,339 @@ public class DealServiceImpl implements DealService {
 
     @Override
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        catalogCache.put(savedProduct);
+        return savedProduct;
     }
 
-        @Override
-    @Transactional
+    @Override
+    public Product buy(Long userId, Long dealId, String idempotencyKey) {
+        if (!clusterCoordinator.isLocal(dealId)) {
+            // The owner keeps the key, so a retry through any node gets the stored result
+            return clusterCoordinator.forwardBuy(userId, dealId, idempotencyKey);
+        }
+        return buyAsOwner(userId, dealId, idempotencyKey);
+    }
+
+    @Override
+    public CompletableFuture<Product> buyAsync(Long userId, Long dealId, String idempotencyKey) {
+        return purchaseLanes.submit(dealId, () -> buy(userId, dealId, idempotencyKey));
+    }
+
+    @Override
     public Product buy(Long userId, Long dealId) {
-        Deal deal = dealRepository.findById(dealId)
-                .orElseThrow(()-> new DealNotFoundException(dealId, "Deal"));
+        if (!clusterCoordinator.isLocal(dealId)) {
+            return clusterCoordinator.forwardBuy(userId, dealId, null);
+        }
+        return buyAsOwner(userId, dealId);
+    }
+
+    @Override
+    public Product buyAsOwner(Long userId, Long dealId, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return buyAsOwner(userId, dealId);
+        }
+        // A retried request with the same key gets the stored result instead of buying again
+        return idempotencyCache.execute(userId, idempotencyKey, dealId, () -> buyAsOwner(userId, dealId));
+    }
+
+    @Override
+    public Product buyAsOwner(Long userId, Long dealId) {
+        // A node that no longer owns the deal would sell from a stale counter
+        if (!clusterCoordinator.isLocal(dealId)) {
+            throw new DealNotOwnedException(dealId);
+        }
+        clusterCoordinator.takeOwnership(dealId);
+        long start = System.nanoTime();
+        try {
+            Product product = clusterCoordinator.sell(dealId, () -> doBuy(userId, dealId, null));
+            dealMetrics.recordBuy(DealMetrics.BuyOutcome.SUCCESS, start);
+            dealStatusPublisher.markChanged(dealId);
+            activeDealSnapshot.markChanged(dealId);
+            return product;
+        } catch (RuntimeException e) {
+            dealMetrics.recordBuyFailure(e, start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Product rehearseBuy(Long userId, Long dealId, PurchaseRehearsal rehearsal) {
+        return doBuy(userId, dealId, rehearsal);
+    }
+
+    @Override
+    public List<PurchaseHistory> purchaseHistory(Long userId, int page, int size) {
+        return archivedDealRepository.findPurchaseHistory(userId, PageRequest.of(page, size));
+    }
+
+    // A rehearsal runs before the start, reserves from its scratch counter and stops before the claim records anything
+    private Product doBuy(Long userId, Long dealId, PurchaseRehearsal rehearsal) {
+        if (rehearsal == null && !inventoryEngine.hasStarted(dealId)) {
+            throw new DealNotStartedException(dealId, catalogCache.getDeal(dealId).getStartTime());
+        }
+        if (purchaseMode == PurchaseMode.CONDITIONAL_UPDATE) {
+            return buyWithConditionalUpdate(userId, dealId, rehearsal);
+        }
+        if (purchaseMode == PurchaseMode.ACTOR) {
+            return buyWithActor(userId, dealId, rehearsal);
+        }
+        // Repeat buyers and sold-out requests are rejected from memory before a transaction is opened
+        if (!inventoryEngine.isOpen(dealId)) {
+            throw new DealExpiredException(dealId);
+        }
+        if (dedupFilter.contains(dealId, userId)) {
+            throw new DuplicatePurchaseException(userId, dealId);
+        }
+        if (rehearsal != null) {
+            return rehearseClaim(userId, dealId, rehearsal);
+        }
+        if (!inventoryEngine.tryReserve(dealId, userId)) {
+            throw new DealSoldOutException(dealId);
+        }
+        try {
+            // Sold-out and repeat requests are already gone; cap what may now wait on a connection
+            return admissionController.admit(dealId, () -> claimWriteBehind.isEnabled()
+                    ? queueClaim(userId, dealId)
+                    : claimInTransaction(userId, dealId));
+        } catch (RuntimeException e) {
+            inventoryEngine.release(dealId, userId);
+            throw e;
+        }
+    }
+
+    private Product claimInTransaction(Long userId, Long dealId) {
+        Product product = transactionTemplate.execute(status -> {
+            Product claimed = claim(userId, dealId);
+            // Rolls the row back if the claim cannot be made durable in the log
+            if (claimLog.isEnabled()) {
+                dedupFilter.add(dealId, userId);
+                appendToLog(userId, dealId);
+            }
+            return claimed;
+        });
+        inventoryEngine.confirm(dealId);
+        dedupFilter.add(dealId, userId);
+        return product;
+    }
+
+    private Product claim(Long userId, Long dealId) {
+        Deal deal = catalogCache.getDeal(dealId);
         Users user = userRepository.findById(userId)
                 .orElseThrow(()-> new DealNotFoundException(userId, "User"));
-        Set<Users> users = deal.getUsers(); // triggers lazy loading
-        if (!deal.isValid() || users.contains(user)) {
+        if (!deal.isValid()) {
             throw new InvalidDealException(user.getUserName(), dealId);
         }
 
         // Make state changes
-
-        deal.getUsers().add(user);
+        try {
+            dealClaimRepository.saveAndFlush(new DealClaim(dealId, userId));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request of the same user won the unique (deal_id, user_id) index
+            throw new InvalidDealException(user.getUserName(), dealId);
+        }
 
         if (deal.getDiscount() == 0) {
-            deal.setValid(false);
+            closeDeal(dealId);
         }
 
-        // Save changes
-        dealRepository.save(deal);
+        // Products never change, so this is served from the cache
+        return catalogCache.getProduct(deal.getProductId());
+    }
+
+    // The lookups a claim starts with; the claim itself would record the sale
+    private Product rehearseClaim(Long userId, Long dealId, PurchaseRehearsal rehearsal) {
+        if (!rehearsal.tryReserve(userId)) {
+            throw new DealSoldOutException(dealId);
+        }
+        Deal deal = catalogCache.getDeal(dealId);
+        Users user = userRepository.findById(userId)
+                .orElseThrow(()-> new DealNotFoundException(userId, "User"));
+        if (!deal.isValid()) {
+            throw new InvalidDealException(user.getUserName(), dealId);
+        }
+        return catalogCache.getProduct(deal.getProductId());
+    }
+
+    private Product queueClaim(Long userId, Long dealId) {
+        Deal deal = catalogCache.getDeal(dealId);
+        Users user = userRepository.findById(userId)
+                .orElseThrow(()-> new DealNotFoundException(userId, "User"));
+        if (!deal.isValid()) {
+            throw new InvalidDealException(user.getUserName(), dealId);
+        }
+        Product product = catalogCache.getProduct(deal.getProductId());
+
+        // Nothing checks deal_users synchronously here, so the dedup filter is the uniqueness check
+        if (!dedupFilter.add(dealId, userId)) {
+            throw new DuplicatePurchaseException(userId, dealId);
+        }
+        if (claimLog.isEnabled()) {
+            appendToLog(userId, dealId);
+        }
+        if (!claimWriteBehind.submit(dealId, userId)) {
+            if (!claimLog.isEnabled()) {
+                dedupFilter.remove(dealId, userId);
+                throw new PurchaseBacklogFullException(dealId);
+            }
+            // The log already holds the sale, so keep the database copy complete instead of refusing it
+            transactionTemplate.executeWithoutResult(status ->
+                    dealClaimRepository.save(new DealClaim(dealId, userId)));
+            inventoryEngine.confirm(dealId);
+        }
 
-        // Load product
-        Product product = productRepository.findById(deal.getProductId())
-                .orElseThrow(() -> new DealNotFoundException(deal.getProductId(), "Product"));
+        if (deal.getDiscount() == 0) {
+            closeDeal(dealId);
+        }
         return product;
     }
+
+    // The claim must already be in the dedup filter so a concurrent snapshot cannot miss it
+    private void appendToLog(Long userId, Long dealId) {
+        try {
+            claimLog.append(dealId, userId);
+        } catch (RuntimeException e) {
+            dedupFilter.remove(dealId, userId);
+            throw e;
+        }
+    }
+
+    private Product buyWithActor(Long userId, Long dealId, PurchaseRehearsal rehearsal) {
+        // Repeat buyers and closed deals are rejected from memory, as in the memory path
+        if (!inventoryEngine.isOpen(dealId)) {
+            throw new DealExpiredException(dealId);
+        }
+        if (dedupFilter.contains(dealId, userId)) {
+            throw new DuplicatePurchaseException(userId, dealId);
+        }
+        if (rehearsal != null) {
+            // The shard's claim is the sale itself
+            return rehearseClaim(userId, dealId, rehearsal);
+        }
+        // The shard itself never waits on the database, but the user lookup and the
+        // unqueued saves do, so they are capped like the memory path's claims
+        return admissionController.admit(dealId, () -> claimWithActor(userId, dealId));
+    }
+
+    private Product claimWithActor(Long userId, Long dealId) {
+        Deal deal = catalogCache.getDeal(dealId);
+        Users user = userRepository.findById(userId)
+                .orElseThrow(()-> new DealNotFoundException(userId, "User"));
+        if (!deal.isValid()) {
+            throw new InvalidDealException(user.getUserName(), dealId);
+        }
+
+        DealActorSystem.Claim claim;
+        try {
+            claim = dealActorSystem.claim(dealId, userId).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        boolean logged = false;
+        try {
+            boolean queued = claim.queued();
+            if (claim.logSequence() > 0) {
+                claimLog.awaitDurable(claim.logSequence());
+                logged = true;
+                // Only queued once durable, so a claim the log lost never reaches the database
+                queued = claimWriteBehind.trySubmit(dealId, userId);
+            }
+            if (!queued) {
+                // The shard already counted the sale; persist it here rather than block the shard on the database
+                transactionTemplate.executeWithoutResult(status ->
+                        dealClaimRepository.save(new DealClaim(dealId, userId)));
+                inventoryEngine.confirm(dealId);
+            }
+        } catch (RuntimeException e) {
+            // Once in the log the sale stands and recovery restores it; before that, undo the shard's claim
+            if (!logged) {
+                dedupFilter.remove(dealId, userId);
+                inventoryEngine.release(dealId, userId);
+            }
+            throw e;
+        }
+
+        if (deal.getDiscount() == 0) {
+            closeDeal(dealId);
+        }
+        return catalogCache.getProduct(deal.getProductId());
+    }
+
+    private Product buyWithConditionalUpdate(Long userId, Long dealId, PurchaseRehearsal rehearsal) {
+        if (dedupFilter.contains(dealId, userId)) {
+            throw new DuplicatePurchaseException(userId, dealId);
+        }
+        if (rehearsal != null) {
+            // The conditional statement is the sale itself
+            return rehearseClaim(userId, dealId, rehearsal);
+        }
+        LocalDateTime now = LocalDateTime.now(java.time.ZoneId.of("Asia/Kolkata"));
+        int claimed;
+        try {
+            claimed = admissionController.admit(dealId, () -> dealRepository.claimUnit(dealId, userId, now));
+        } catch (DataIntegrityViolationException e) {
+            dedupFilter.add(dealId, userId);
+            throw new DuplicatePurchaseException(userId, dealId);
+        }
+        if (claimed == 0) {
+            throw conditionalClaimRejection(userId, dealId, now);
+        }
+        dedupFilter.add(dealId, userId);
+
+        Deal deal = catalogCache.getDeal(dealId);
+        if (deal.getDiscount() == 0) {
+            closeDeal(dealId);
+        }
+        return catalogCache.getProduct(deal.getProductId());
+    }
+
+    // Only runs when the claim failed, to tell the caller why
+    private RuntimeException conditionalClaimRejection(Long userId, Long dealId, LocalDateTime now) {
+        DealRepository.StockView stock = dealRepository.findStockById(dealId)
+                .orElseThrow(() -> new DealNotFoundException(dealId, "Deal"));
+        Users user = userRepository.findById(userId)
+                .orElseThrow(() -> new DealNotFoundException(userId, "User"));
+        if (!stock.getValid() || !stock.getEndTime().isAfter(now)) {
+            return new DealExpiredException(dealId);
+        }
+        if (stock.getStartTime().isAfter(now)) {
+            return new DealNotStartedException(dealId, stock.getStartTime());
+        }
+        if (stock.getSold() >= stock.getProductCount()) {
+            return new DealSoldOutException(dealId);
+        }
+        return new InvalidDealException(user.getUserName(), dealId);
+    }
+
+    private void closeDeal(Long dealId) {
+        dealRepository.deactivateDeals(List.of(dealId));
+        inventoryEngine.close(dealId);
+        admissionController.forget(dealId);
+        unlistAfterCommit(dealId);
+    }
+
+    /**
+     * Drops a deactivated deal from the caches, the listing and the status stream once
+     * the deactivation is committed. Doing it earlier would let a refresh read the deal
+     * as still valid and list it again.
+     */
+    private void unlistAfterCommit(Long dealId) {
+        Runnable unlist = () -> {
+            catalogCache.invalidateDeal(dealId);
+            dealStatusPublisher.markChanged(dealId);
+            activeDealSnapshot.markChanged(dealId);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            unlist.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                unlist.run();
+            }
+        });
+    }
 //    @Override
 //    @Transactional
 //    public Product buy(Long userId, Long dealId) {
@@ -0,0 +1,53 @@
+package com.limitedtimedeal.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashRingTest {
+
+    private static final List<String> MEMBERS = List.of("http://a:8080", "http://b:8080", "http://c:8080");
+
+    @Test
+    void everyNodeComputesTheSameOwners() {
+        HashRing ring = new HashRing(MEMBERS, 128);
+        HashRing reordered = new HashRing(List.of(MEMBERS.get(2), MEMBERS.get(0), MEMBERS.get(1)), 128);
+
+        for (long dealId = 1; dealId <= 1000; dealId++) {
+            assertThat(reordered.ownerOf(dealId)).isEqualTo(ring.ownerOf(dealId));
+        }
+    }
+
+    @Test
+    void spreadsSequentialDealIdsOverAllMembers() {
+        HashRing ring = new HashRing(MEMBERS, 128);
+        Map<String, Integer> owned = new HashMap<>();
+
+        for (long dealId = 1; dealId <= 30_000; dealId++) {
+            owned.merge(ring.ownerOf(dealId), 1, Integer::sum);
+        }
+
+        assertThat(owned).containsOnlyKeys(MEMBERS);
+        // An even split is 10 000 each
+        assertThat(owned.values()).allSatisfy(count -> assertThat(count).isBetween(7_000, 13_000));
+    }
+
+    @Test
+    void onlyTheDealsOfALeavingMemberMove() {
+        HashRing before = new HashRing(MEMBERS, 128);
+        HashRing after = new HashRing(List.of(MEMBERS.get(0), MEMBERS.get(2)), 128);
+
+        for (long dealId = 1; dealId <= 10_000; dealId++) {
+            String owner = before.ownerOf(dealId);
+            if (!owner.equals(MEMBERS.get(1))) {
+                assertThat(after.ownerOf(dealId)).isEqualTo(owner);
+            } else {
+                assertThat(after.ownerOf(dealId)).isNotEqualTo(MEMBERS.get(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.limitedtimedeal.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsTheBurstThenRejectsWithTheWaitForTheNextToken() {
+        TokenBucket bucket = new TokenBucket(2, 3, 0);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.tryConsume(0)).isZero();
+        }
+
+        assertThat(bucket.tryConsume(0)).isEqualTo(SECOND / 2);
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+        assertThat(bucket.tryConsume(0)).isZero();
+
+        assertThat(bucket.tryConsume(SECOND / 4)).isEqualTo(SECOND / 4);
+        assertThat(bucket.tryConsume(SECOND / 2)).isZero();
+    }
+
+    @Test
+    void doesNotSaveUpMoreThanTheBurstWhileIdle() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+
+        long later = 60 * SECOND;
+        assertThat(bucket.tryConsume(later)).isZero();
+        assertThat(bucket.tryConsume(later)).isZero();
+        assertThat(bucket.tryConsume(later)).isPositive();
+    }
+
+    @Test
+    void refundGivesBackExactlyOneToken() {
+        TokenBucket bucket = new TokenBucket(1, 2, 0);
+        bucket.tryConsume(0);
+        bucket.tryConsume(0);
+
+        bucket.refund();
+
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isPositive();
+    }
+}
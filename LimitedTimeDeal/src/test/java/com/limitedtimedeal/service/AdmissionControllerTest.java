@@ -0,0 +1,80 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.exceptions.AdmissionRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionControllerTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void rejectsWorkOverTheLimitAndAdmitsItOnceReleased() {
+        AdmissionController.AdaptiveLimit limit = new AdmissionController.AdaptiveLimit(2, 1, 10);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+
+        limit.release(MILLIS);
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void shrinksWhenLatencyClimbsAndStopsAtTheMinimum() {
+        AdmissionController.AdaptiveLimit limit = new AdmissionController.AdaptiveLimit(10, 8, 100);
+        limit.tryAcquire();
+        limit.release(MILLIS);
+
+        limit.tryAcquire();
+        limit.release(1000 * MILLIS);
+        assertThat(limit.limit()).isLessThan(10);
+
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(1000 * MILLIS);
+        }
+        assertThat(limit.limit()).isEqualTo(8);
+    }
+
+    @Test
+    void growsWhileBusyAndLatencyStaysFlat() {
+        AdmissionController.AdaptiveLimit limit = new AdmissionController.AdaptiveLimit(10, 1, 40);
+        for (int i = 0; i < 100; i++) {
+            // Keep the limit in use so there is something to learn
+            while (limit.tryAcquire()) {
+                // Take every permit the current limit allows
+            }
+            limit.release(MILLIS);
+        }
+
+        assertThat(limit.limit()).isEqualTo(40);
+    }
+
+    @Test
+    void ignoresLatencyWhileMostOfTheLimitIsUnused() {
+        AdmissionController.AdaptiveLimit limit = new AdmissionController.AdaptiveLimit(20, 1, 100);
+        for (int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.release(MILLIS);
+        }
+
+        assertThat(limit.limit()).isEqualTo(20);
+    }
+
+    @Test
+    void failsFastOverTheLimitAndForgetsClosedDeals() {
+        AdmissionController controller = new AdmissionController(true, 1, 1, 1);
+
+        assertThatThrownBy(() -> controller.admit(1L, () -> controller.admit(1L, () -> "inner")))
+                .isInstanceOf(AdmissionRejectedException.class);
+        assertThat(controller.admit(1L, () -> "after")).isEqualTo("after");
+
+        controller.forget(1L);
+        assertThat(controller.limit(1L)).isEqualTo(1);
+    }
+}
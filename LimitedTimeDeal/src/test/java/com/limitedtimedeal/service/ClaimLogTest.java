@@ -0,0 +1,176 @@
+package com.limitedtimedeal.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClaimLogTest {
+
+    @TempDir
+    Path directory;
+
+    private ClaimLog claimLog;
+
+    @AfterEach
+    void closeLog() throws InterruptedException {
+        if (claimLog != null) {
+            claimLog.close();
+        }
+    }
+
+    @Test
+    void replaysAppendedClaimsAfterReopen() throws InterruptedException {
+        open(new ArrayList<>(), Set.of());
+        claimLog.append(1, 10);
+        claimLog.append(1, 11);
+        claimLog.append(2, 10);
+        claimLog.close();
+
+        List<String> replayed = new ArrayList<>();
+        open(replayed, Set.of());
+
+        assertThat(replayed).containsExactly("1:10", "1:11", "2:10");
+    }
+
+    @Test
+    void stopsAtTornRecordAndNeverReplaysRecordsAfterIt() throws Exception {
+        open(new ArrayList<>(), Set.of());
+        claimLog.append(1, 10);
+        claimLog.append(1, 11);
+        claimLog.append(1, 12);
+        claimLog.close();
+        // The second record's magic never reached the disk, the third one did
+        patch(segment(), ClaimLog.RECORD_SIZE, 0);
+
+        List<String> replayed = new ArrayList<>();
+        open(replayed, Set.of());
+        assertThat(replayed).containsExactly("1:10");
+
+        claimLog.append(1, 20);
+        claimLog.close();
+        replayed.clear();
+        open(replayed, Set.of());
+
+        assertThat(replayed).containsExactly("1:10", "1:20");
+    }
+
+    @Test
+    void stopsAtRecordWithCorruptChecksum() throws Exception {
+        open(new ArrayList<>(), Set.of());
+        claimLog.append(1, 10);
+        claimLog.append(1, 11);
+        claimLog.append(1, 12);
+        claimLog.close();
+        // Flip the user id of the second record
+        patch(segment(), ClaimLog.RECORD_SIZE + 16, 99);
+
+        List<String> replayed = new ArrayList<>();
+        open(replayed, Set.of());
+
+        assertThat(replayed).containsExactly("1:10");
+    }
+
+    @Test
+    void recoversFromSnapshotAndReplaysOnlyTheTailAfterIt() throws InterruptedException {
+        open(new ArrayList<>(), Set.of());
+        claimLog.append(1, 10);
+        claimLog.append(1, 11);
+        claimLog.snapshot();
+        claimLog.append(2, 30);
+        claimLog.close();
+
+        List<String> replayed = new ArrayList<>();
+        open(replayed, Set.of());
+
+        assertThat(replayed).containsExactly("1:10", "1:11", "2:30");
+    }
+
+    @Test
+    void snapshotsCarryForwardTheLastSnapshotAndDropDealsNoLongerRetained() throws InterruptedException {
+        open(new ArrayList<>(), Set.of(1L, 2L));
+        claimLog.append(1, 10);
+        claimLog.append(3, 10);
+        claimLog.snapshot();
+        claimLog.append(2, 20);
+        claimLog.snapshot();
+        claimLog.close();
+
+        List<String> replayed = new ArrayList<>();
+        open(replayed, Set.of());
+
+        assertThat(replayed).containsExactly("1:10", "2:20");
+    }
+
+    @Test
+    void snapshotsLeaveOutRecordsThatWereNotForcedYet() throws Exception {
+        claimLog = new ClaimLog("log", directory, 1, 60_000);
+        claimLog.recover((dealId, userId) -> { }, dealId -> true);
+        claimLog.write(1, 10);
+        claimLog.snapshot();
+        // Header and trailer only
+        assertThat(Files.size(directory.resolve("claims").resolve("snapshot.bin"))).isEqualTo(32);
+        claimLog.close();
+
+        List<String> replayed = new ArrayList<>();
+        open(replayed, Set.of());
+
+        assertThat(replayed).containsExactly("1:10");
+    }
+
+    @Test
+    void rollsIntoNewSegmentsAndRecoversAcrossThem() throws Exception {
+        open(new ArrayList<>(), Set.of());
+        int perSegment = 1024 * 1024 / ClaimLog.RECORD_SIZE;
+        long last = 0;
+        for (int i = 0; i < perSegment * 2 + 10; i++) {
+            last = claimLog.write(1, i);
+        }
+        claimLog.awaitDurable(last);
+        assertThat(segmentCount()).isGreaterThanOrEqualTo(3);
+        claimLog.snapshot();
+        assertThat(segmentCount()).isLessThanOrEqualTo(2);
+        claimLog.append(2, 1);
+        claimLog.close();
+
+        List<String> replayed = new ArrayList<>();
+        open(replayed, Set.of());
+
+        assertThat(replayed).hasSize(perSegment * 2 + 11).endsWith("2:1");
+    }
+
+    private void open(List<String> replayed, Set<Long> retainedDeals) {
+        claimLog = new ClaimLog("log", directory, 1, 1);
+        claimLog.recover((dealId, userId) -> replayed.add(dealId + ":" + userId),
+                dealId -> retainedDeals.isEmpty() || retainedDeals.contains(dealId));
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("claims"))) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    private Path segment() {
+        return directory.resolve("claims").resolve("claims-000000.log");
+    }
+
+    private static void patch(Path file, long offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), offset);
+        }
+        assertThat(Files.size(file)).isGreaterThan(offset);
+    }
+}
@@ -0,0 +1,63 @@
+package com.limitedtimedeal.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClaimWriteBehindTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void savesClaimsTheDatabaseRefusesAtShutdownAndFailsLoudly() throws Exception {
+        ClaimWriteBehind writeBehind = withDatabaseDown();
+        writeBehind.start();
+        assertThat(writeBehind.submit(1L, 10L)).isTrue();
+        assertThat(writeBehind.submit(2L, 20L)).isTrue();
+
+        assertThatThrownBy(writeBehind::stop)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("2 acknowledged claims");
+        assertThat(Files.readAllLines(directory.resolve("unwritten-claims.csv"))).containsExactly("1,10", "2,20");
+    }
+
+    @Test
+    void keepsSavedClaimsUntilTheDatabaseTakesThem() throws Exception {
+        Files.writeString(directory.resolve("unwritten-claims.csv"), "1,10\n");
+
+        assertThatThrownBy(withDatabaseDown()::start).isInstanceOf(CannotCreateTransactionException.class);
+        assertThat(Files.readAllLines(directory.resolve("unwritten-claims.csv"))).containsExactly("1,10");
+    }
+
+    private ClaimWriteBehind withDatabaseDown() {
+        PlatformTransactionManager unavailable = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                throw new CannotCreateTransactionException("Database is down");
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+        PurchaseDedupFilter dedupFilter = new PurchaseDedupFilter(null, null, new ClaimLog("database", directory, 1, 1));
+        return new ClaimWriteBehind(null, null, new TransactionTemplate(unavailable), null, dedupFilter,
+                new SimpleMeterRegistry(), true, 10, 10, 1, 10, 0, directory);
+    }
+}
@@ -0,0 +1,54 @@
+package com.limitedtimedeal.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DealExpiryWheelTest {
+
+    private final DealExpiryWheel wheel = new DealExpiryWheel();
+
+    // Whole seconds, so the deadlines below fall at known points within a tick
+    private final long now = System.currentTimeMillis() / 1000 * 1000;
+
+    @Test
+    void expiresDealsOnlyOnceTheirDeadlineHasPassed() {
+        wheel.schedule(1L, now + 1_500);
+        wheel.schedule(2L, now + 3_500);
+
+        assertThat(wheel.advance(now + 1_000)).isEmpty();
+        assertThat(wheel.advance(now + 2_000)).containsExactly(1L);
+        assertThat(wheel.advance(now + 3_000)).isEmpty();
+        assertThat(wheel.advance(now + 4_000)).containsExactly(2L);
+        assertThat(wheel.advance(now + 5_000)).isEmpty();
+    }
+
+    @Test
+    void keepsDealsMoreThanOneRevolutionAwayUntilTheirDeadline() {
+        // 512 one-second slots: this deal shares a slot with ticks one revolution earlier
+        long deadline = now + 600_000;
+        wheel.schedule(1L, deadline);
+
+        for (long at = now + 1_000; at < deadline; at += 1_000) {
+            assertThat(wheel.advance(at)).as("at +%d ms", at - now).isEmpty();
+        }
+        assertThat(wheel.advance(deadline + 1_000)).containsExactly(1L);
+    }
+
+    @Test
+    void expiresOverdueDealsOnTheNextTick() {
+        wheel.advance(now + 2_000);
+
+        wheel.schedule(1L, now - 60_000);
+
+        assertThat(wheel.advance(now + 3_000)).containsExactly(1L);
+    }
+
+    @Test
+    void catchesUpAfterMoreThanOneRevolutionWithoutTicks() {
+        wheel.schedule(1L, now + 5_000);
+        wheel.schedule(2L, now + 700_000);
+
+        assertThat(wheel.advance(now + 1_000_000)).containsExactlyInAnyOrder(1L, 2L);
+    }
+}
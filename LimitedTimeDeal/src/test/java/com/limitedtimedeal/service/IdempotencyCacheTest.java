@@ -0,0 +1,117 @@
+package com.limitedtimedeal.service;
+
+import com.limitedtimedeal.exceptions.DealSoldOutException;
+import com.limitedtimedeal.exceptions.IdempotencyKeyReuseException;
+import com.limitedtimedeal.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyCacheTest {
+
+    private final IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), 1000, Duration.ofMinutes(10));
+
+    private final Product product = new Product(1L, "phone");
+
+    private final AtomicInteger purchases = new AtomicInteger();
+
+    @Test
+    void replaysTheStoredResultWithoutBuyingAgain() {
+        assertThat(cache.execute(1L, "key", 10L, this::purchase)).isSameAs(product);
+        assertThat(cache.execute(1L, "key", 10L, this::purchase)).isSameAs(product);
+
+        assertThat(purchases.get()).isEqualTo(1);
+    }
+
+    @Test
+    void scopesKeysToTheUser() {
+        cache.execute(1L, "key", 10L, this::purchase);
+        cache.execute(2L, "key", 10L, this::purchase);
+
+        assertThat(purchases.get()).isEqualTo(2);
+    }
+
+    @Test
+    void refusesAKeyReusedForAnotherDeal() {
+        cache.execute(1L, "key", 10L, this::purchase);
+
+        assertThatThrownBy(() -> cache.execute(1L, "key", 11L, this::purchase))
+                .isInstanceOf(IdempotencyKeyReuseException.class);
+        assertThat(purchases.get()).isEqualTo(1);
+    }
+
+    @Test
+    void forgetsFailedPurchasesSoTheRetryRunsAgain() {
+        assertThatThrownBy(() -> cache.execute(1L, "key", 10L, () -> {
+            throw new DealSoldOutException(10L);
+        })).isInstanceOf(DealSoldOutException.class);
+
+        assertThat(cache.execute(1L, "key", 10L, this::purchase)).isSameAs(product);
+        assertThat(purchases.get()).isEqualTo(1);
+    }
+
+    @Test
+    void releasesWaitersAndForgetsTheKeyWhenThePurchaseThrowsAnError() throws Exception {
+        CountDownLatch purchaseStarted = new CountDownLatch(1);
+        CountDownLatch failPurchase = new CountDownLatch(1);
+        CompletableFuture<Product> first = CompletableFuture.supplyAsync(() -> cache.execute(1L, "key", 10L, () -> {
+            purchaseStarted.countDown();
+            await(failPurchase);
+            throw new StackOverflowError();
+        }));
+        assertThat(purchaseStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Product> waiter = CompletableFuture.supplyAsync(() -> cache.execute(1L, "key", 10L, this::purchase));
+
+        failPurchase.countDown();
+
+        assertThatThrownBy(() -> first.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        // The waiter either saw the same error or, arriving after it, bought afresh
+        try {
+            assertThat(waiter.get(10, TimeUnit.SECONDS)).isSameAs(product);
+        } catch (ExecutionException e) {
+            assertThat(e).hasCauseInstanceOf(StackOverflowError.class);
+        }
+        assertThat(cache.execute(1L, "key", 10L, this::purchase)).isSameAs(product);
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyShareOnePurchase() throws Exception {
+        CountDownLatch purchaseStarted = new CountDownLatch(1);
+        CountDownLatch finishPurchase = new CountDownLatch(1);
+        CompletableFuture<Product> first = CompletableFuture.supplyAsync(() -> cache.execute(1L, "key", 10L, () -> {
+            purchaseStarted.countDown();
+            await(finishPurchase);
+            return purchase();
+        }));
+        assertThat(purchaseStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Product> retry = CompletableFuture.supplyAsync(() -> cache.execute(1L, "key", 10L, this::purchase));
+        finishPurchase.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).isSameAs(product);
+        assertThat(retry.get(10, TimeUnit.SECONDS)).isSameAs(product);
+        assertThat(purchases.get()).isEqualTo(1);
+    }
+
+    private Product purchase() {
+        purchases.incrementAndGet();
+        return product;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.limitedtimedeal.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PurchaseDedupFilterTest {
+
+    // Never recovered, so the repository, template and log are not needed
+    private final PurchaseDedupFilter filter = new PurchaseDedupFilter(null, null, null);
+
+    @Test
+    void rejectsRepeatBuyersPerDeal() {
+        assertThat(filter.add(1L, 7L)).isTrue();
+        assertThat(filter.add(1L, 7L)).isFalse();
+        assertThat(filter.add(2L, 7L)).isTrue();
+
+        assertThat(filter.contains(1L, 7L)).isTrue();
+        assertThat(filter.contains(1L, 8L)).isFalse();
+        assertThat(filter.buyerCount(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void keepsEveryOtherBuyerReachableAfterRemovals() {
+        Random random = new Random(17);
+        Set<Long> expected = new HashSet<>();
+        // Dense ids fill the tables enough for long probe runs that removals must shift back
+        for (long userId = 1; userId <= 20_000; userId++) {
+            filter.add(1L, userId);
+            expected.add(userId);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            long userId = 1 + random.nextInt(20_000);
+            filter.remove(1L, userId);
+            expected.remove(userId);
+        }
+
+        for (long userId = 1; userId <= 20_000; userId++) {
+            assertThat(filter.contains(1L, userId)).as("user %d", userId).isEqualTo(expected.contains(userId));
+        }
+        assertThat(filter.buyerCount(1L)).isEqualTo(expected.size());
+    }
+
+    @Test
+    void removedBuyerCanBuyAgain() {
+        filter.add(1L, 0L);
+        filter.add(1L, 5L);
+
+        filter.remove(1L, 0L);
+        filter.remove(1L, 5L);
+
+        assertThat(filter.contains(1L, 0L)).isFalse();
+        assertThat(filter.add(1L, 5L)).isTrue();
+        assertThat(filter.buyerCount(1L)).isEqualTo(1);
+    }
+}
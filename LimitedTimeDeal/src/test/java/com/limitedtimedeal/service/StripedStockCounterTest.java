@@ -0,0 +1,109 @@
+package com.limitedtimedeal.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedStockCounterTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    void borrowsFromOtherStripesBeforeReportingSoldOut() {
+        StripedStockCounter counter = new StripedStockCounter(8, 8);
+
+        // Every buyer has the same home stripe, which holds a single unit
+        for (int i = 0; i < 8; i++) {
+            assertThat(counter.tryAcquire(42)).isTrue();
+        }
+
+        assertThat(counter.tryAcquire(42)).isFalse();
+        assertThat(counter.remaining()).isZero();
+    }
+
+    @Test
+    void releasedUnitCanBeTakenByAnotherStripe() {
+        StripedStockCounter counter = new StripedStockCounter(4, 4);
+        for (int i = 0; i < 4; i++) {
+            counter.tryAcquire(i);
+        }
+
+        counter.release(1);
+
+        assertThat(counter.tryAcquire(2)).isTrue();
+        assertThat(counter.remaining()).isZero();
+    }
+
+    @Test
+    void neverSellsMoreThanItsUnitsUnderContention() throws Exception {
+        StripedStockCounter counter = new StripedStockCounter(1000, 16);
+        AtomicInteger sold = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 500; i++) {
+                if (counter.tryAcquire(thread * 1_000_000L + i)) {
+                    sold.incrementAndGet();
+                }
+            }
+        });
+
+        assertThat(sold.get()).isEqualTo(1000);
+        assertThat(counter.remaining()).isZero();
+    }
+
+    @Test
+    void neverReportsSoldOutWhileUnitsRemain() throws Exception {
+        // One unit per thread and each thread holds at most one, so a unit is always free for it
+        StripedStockCounter counter = new StripedStockCounter(THREADS, THREADS);
+        AtomicInteger falseSoldOut = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 200_000; i++) {
+                long buyer = thread * 1_000_000L + i;
+                if (!counter.tryAcquire(buyer)) {
+                    falseSoldOut.incrementAndGet();
+                    continue;
+                }
+                counter.release(buyer);
+            }
+        });
+
+        assertThat(falseSoldOut.get()).isZero();
+        assertThat(counter.remaining()).isEqualTo(THREADS);
+    }
+
+    private static void runConcurrently(ThreadBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    body.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadBody {
+        void run(int thread);
+    }
+}